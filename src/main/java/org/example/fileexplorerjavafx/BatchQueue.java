@@ -0,0 +1,105 @@
+package org.example.fileexplorerjavafx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded hand-off of result batches from worker threads to the JavaFX thread. Workers add whole
+ * batches and block while the items not yet taken reach the capacity, so a scan that outruns the
+ * UI is slowed down instead of piling up work on the event queue. The JavaFX thread takes
+ * everything queued at once, typically once per pulse, and merges it into a single update.
+ */
+public class BatchQueue<T> {
+
+    /**
+     * System property that overrides the default capacity, in items.
+     */
+    public static final String CAPACITY_PROPERTY = "battuta.scan.queueCapacity";
+
+    private final ConcurrentLinkedQueue<List<T>> batches = new ConcurrentLinkedQueue<>();
+    private final Semaphore space;
+    private final int capacity;
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile boolean closed;
+
+    /**
+     * Creates a queue holding up to the {@value #CAPACITY_PROPERTY} system property items, 65536 by default.
+     */
+    public BatchQueue() {
+        this(Integer.getInteger(CAPACITY_PROPERTY, 65536));
+    }
+
+    public BatchQueue(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+        }
+        this.capacity = capacity;
+        this.space = new Semaphore(capacity);
+    }
+
+    /**
+     * Adds a batch, waiting while the queue is full. A batch larger than the capacity waits for an
+     * empty queue.
+     *
+     * @return false if the queue was closed and the batch dropped
+     */
+    public boolean put(List<T> batch) {
+        if (batch.isEmpty()) {
+            return !closed;
+        }
+        int permits = permits(batch);
+        space.acquireUninterruptibly(permits);
+        if (closed) {
+            space.release(permits);
+            return false;
+        }
+        size.addAndGet(batch.size());
+        batches.add(batch);
+        return true;
+    }
+
+    /**
+     * Takes every queued batch, merged into one list in the order they were added, and wakes the
+     * workers waiting for space. Returns an empty list if nothing is queued.
+     */
+    public List<T> drain() {
+        List<T> merged = new ArrayList<>();
+        for (List<T> batch; (batch = batches.poll()) != null; ) {
+            merged.addAll(batch);
+            size.addAndGet(-batch.size());
+            space.release(permits(batch));
+        }
+        return merged;
+    }
+
+    /**
+     * Gets the number of items waiting to be taken.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Drops every later batch and releases the workers waiting for space. Batches already queued
+     * can still be drained.
+     */
+    public void close() {
+        closed = true;
+        space.release(capacity);
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private int permits(List<T> batch) {
+        return Math.min(batch.size(), capacity);
+    }
+}
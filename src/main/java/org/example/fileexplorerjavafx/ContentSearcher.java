@@ -0,0 +1,470 @@
+package org.example.fileexplorerjavafx;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Full-text search over file contents. A file matches when it contains every search term,
+ * ignoring ASCII case. A single term is found with Boyer-Moore-Horspool, which skips ahead by up to
+ * the term length per comparison; several terms are found in one pass with an Aho-Corasick automaton.
+ * <p>
+ * Files are searched in parallel on a {@link ForkJoinPool} that the searcher keeps for its whole
+ * life. Files up to 1 MB are read into a direct buffer taken from the searcher's own pool of
+ * buffers, so no more buffers are ever allocated than files were read at once; larger files are
+ * memory-mapped. Files larger than the size cap and files that look binary, with a NUL byte near
+ * the start, are skipped.
+ */
+public class ContentSearcher {
+
+    public static final String MAX_FILE_SIZE_PROPERTY = "battuta.grep.maxFileSize";
+
+    private static final Set<FileVisitOption> NO_OPTIONS = EnumSet.noneOf(FileVisitOption.class);
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final int BINARY_CHECK_BYTES = 8192;
+    private static final int MAX_TERMS = 31;
+    private static final int FILES_PER_TASK = 16;
+
+    private final ForkJoinPool pool;
+    private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private final long maxFileSize;
+    private volatile AtomicBoolean currentSearch = new AtomicBoolean();
+
+    private final AtomicInteger searchedFiles = new AtomicInteger();
+    private final AtomicInteger skippedFiles = new AtomicInteger();
+
+    /**
+     * Creates a searcher that skips files larger than the {@value #MAX_FILE_SIZE_PROPERTY} system
+     * property, 64 MB by default.
+     */
+    public ContentSearcher(int workers) {
+        this(workers, Long.getLong(MAX_FILE_SIZE_PROPERTY, 64L * 1024 * 1024));
+    }
+
+    /**
+     * @param maxFileSize files larger than this many bytes are skipped
+     */
+    public ContentSearcher(int workers, long maxFileSize) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1: " + workers);
+        }
+        this.pool = new ForkJoinPool(workers);
+        this.maxFileSize = Math.min(maxFileSize, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Searches the given files and hands every match to the consumer as soon as it is found. The
+     * consumer is called from the worker threads and may be invoked concurrently.
+     *
+     * @param query the search terms, separated by whitespace
+     * @return true if the search ran to completion, false if it was cancelled
+     */
+    public boolean search(List<Path> files, String query, MatchConsumer consumer) {
+        Matcher matcher = createMatcher(query);
+        return run(new FilesTask(files, null, null, 0, files.size(), matcher, consumer, start()));
+    }
+
+    /**
+     * Searches the given files like {@link #search(List, String, MatchConsumer)}, trusting the
+     * given sizes and modification times, such as the ones a scan recorded, instead of reading
+     * them from the file system again. Every file must be a regular file.
+     */
+    public boolean search(List<Path> files, long[] sizes, long[] lastModifiedTimes, String query, MatchConsumer consumer) {
+        if (sizes.length != files.size() || lastModifiedTimes.length != files.size()) {
+            throw new IllegalArgumentException("Expected a size and a modification time per file");
+        }
+        Matcher matcher = createMatcher(query);
+        return run(new FilesTask(files, sizes, lastModifiedTimes, 0, files.size(), matcher, consumer, start()));
+    }
+
+    /**
+     * Searches every regular file in the tree under the given directory, like {@link #search}.
+     * Symbolic links are not followed.
+     */
+    public boolean searchTree(Path directory, String query, MatchConsumer consumer) {
+        Matcher matcher = createMatcher(query);
+        return run(new DirectoryTask(directory, matcher, consumer, start()));
+    }
+
+    /**
+     * Stops the most recently started search. Files that are being read finish first.
+     */
+    public void cancel() {
+        currentSearch.set(true);
+    }
+
+    /**
+     * Gets the number of files the last search read.
+     */
+    public int getSearchedFiles() {
+        return searchedFiles.get();
+    }
+
+    /**
+     * Gets the number of files the last search skipped as too large, binary or unreadable.
+     */
+    public int getSkippedFiles() {
+        return skippedFiles.get();
+    }
+
+    private AtomicBoolean start() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        currentSearch = cancelled;
+        searchedFiles.set(0);
+        skippedFiles.set(0);
+        return cancelled;
+    }
+
+    private boolean run(RecursiveAction task) {
+        AtomicBoolean cancelled = currentSearch;
+        pool.invoke(task);
+        return !cancelled.get();
+    }
+
+    private void searchFile(Path file, long size, long lastModified, Matcher matcher, MatchConsumer consumer) {
+        if (size > maxFileSize) {
+            skippedFiles.incrementAndGet();
+            return;
+        }
+
+        ByteBuffer buffer = null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer content;
+            if (size <= BUFFER_SIZE) {
+                buffer = buffers.poll();
+                if (buffer == null) {
+                    buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+                }
+                content = buffer.clear();
+                while (content.hasRemaining() && channel.read(content) >= 0) {
+                    // Keep reading until the file or the buffer ends.
+                }
+                content.flip();
+            } else {
+                content = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), maxFileSize));
+            }
+
+            if (isBinary(content)) {
+                skippedFiles.incrementAndGet();
+                return;
+            }
+            searchedFiles.incrementAndGet();
+            if (matcher.matches(content)) {
+                consumer.accept(file, size, lastModified);
+            }
+        } catch (IOException e) {
+            skippedFiles.incrementAndGet();
+        } finally {
+            if (buffer != null) {
+                buffers.add(buffer);
+            }
+        }
+    }
+
+    private static boolean isBinary(ByteBuffer content) {
+        int limit = Math.min(content.limit(), BINARY_CHECK_BYTES);
+        for (int i = 0; i < limit; i++) {
+            if (content.get(i) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte fold(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    /**
+     * Builds the matcher for a query: Horspool for one term, Aho-Corasick for several.
+     */
+    static Matcher createMatcher(String query) {
+        List<byte[]> terms = new ArrayList<>();
+        for (String term : query.trim().split("\\s+")) {
+            if (!term.isEmpty() && terms.size() < MAX_TERMS) {
+                byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+                for (int i = 0; i < bytes.length; i++) {
+                    bytes[i] = fold(bytes[i]);
+                }
+                terms.add(bytes);
+            }
+        }
+        if (terms.isEmpty()) {
+            throw new IllegalArgumentException("Query has no search terms");
+        }
+        return terms.size() == 1 ? new HorspoolMatcher(terms.get(0)) : new AhoCorasickMatcher(terms);
+    }
+
+    /**
+     * Receives a file whose content matched.
+     */
+    @FunctionalInterface
+    public interface MatchConsumer {
+        void accept(Path file, long size, long lastModified);
+    }
+
+    interface Matcher {
+        /**
+         * Tells whether the bytes from 0 to the limit of the buffer contain every term.
+         */
+        boolean matches(ByteBuffer content);
+    }
+
+    /**
+     * Boyer-Moore-Horspool search for one case-folded term.
+     */
+    static final class HorspoolMatcher implements Matcher {
+        private final byte[] pattern;
+        private final int[] shifts = new int[256];
+
+        HorspoolMatcher(byte[] pattern) {
+            this.pattern = pattern;
+            int m = pattern.length;
+            Arrays.fill(shifts, m);
+            for (int i = 0; i < m - 1; i++) {
+                int b = pattern[i] & 0xFF;
+                shifts[b] = m - 1 - i;
+                if (b >= 'a' && b <= 'z') {
+                    shifts[b - ('a' - 'A')] = m - 1 - i;
+                }
+            }
+        }
+
+        @Override
+        public boolean matches(ByteBuffer content) {
+            int m = pattern.length;
+            int last = content.limit() - m;
+            int i = 0;
+            while (i <= last) {
+                int j = m - 1;
+                while (j >= 0 && fold(content.get(i + j)) == pattern[j]) {
+                    j--;
+                }
+                if (j < 0) {
+                    return true;
+                }
+                i += shifts[content.get(i + m - 1) & 0xFF];
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Aho-Corasick automaton over several case-folded terms, compiled into a full transition table
+     * so every byte costs one lookup.
+     */
+    static final class AhoCorasickMatcher implements Matcher {
+        private final int[] transitions;
+        private final int[] outputs;
+        private final int allTerms;
+
+        AhoCorasickMatcher(List<byte[]> terms) {
+            int maxStates = 1;
+            for (byte[] term : terms) {
+                maxStates += term.length;
+            }
+            int[] table = new int[maxStates * 256];
+            int[] output = new int[maxStates];
+            int states = 1;
+
+            for (int t = 0; t < terms.size(); t++) {
+                int state = 0;
+                for (byte b : terms.get(t)) {
+                    int slot = state * 256 + (b & 0xFF);
+                    if (table[slot] == 0) {
+                        table[slot] = states++;
+                    }
+                    state = table[slot];
+                }
+                output[state] |= 1 << t;
+            }
+
+            int[] failure = new int[states];
+            int[] queue = new int[states];
+            int head = 0;
+            int tail = 0;
+            for (int c = 0; c < 256; c++) {
+                int next = table[c];
+                if (next != 0) {
+                    queue[tail++] = next;
+                }
+            }
+            while (head < tail) {
+                int state = queue[head++];
+                output[state] |= output[failure[state]];
+                for (int c = 0; c < 256; c++) {
+                    int slot = state * 256 + c;
+                    int next = table[slot];
+                    if (next != 0) {
+                        failure[next] = table[failure[state] * 256 + c];
+                        queue[tail++] = next;
+                    } else {
+                        table[slot] = table[failure[state] * 256 + c];
+                    }
+                }
+            }
+
+            for (int c = 'A'; c <= 'Z'; c++) {
+                for (int state = 0; state < states; state++) {
+                    table[state * 256 + c] = table[state * 256 + c + ('a' - 'A')];
+                }
+            }
+
+            this.transitions = table;
+            this.outputs = output;
+            this.allTerms = (1 << terms.size()) - 1;
+        }
+
+        @Override
+        public boolean matches(ByteBuffer content) {
+            int found = 0;
+            int state = 0;
+            int limit = content.limit();
+            for (int i = 0; i < limit; i++) {
+                state = transitions[state * 256 + (content.get(i) & 0xFF)];
+                int output = outputs[state];
+                if (output != 0) {
+                    found |= output;
+                    if (found == allTerms) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Searches a range of a file list, splitting it in halves until it is small. Sizes and
+     * modification times are read from the file system unless they are given.
+     */
+    private class FilesTask extends RecursiveAction {
+        private final List<Path> files;
+        private final long[] sizes;
+        private final long[] lastModifiedTimes;
+        private final int from;
+        private final int to;
+        private final Matcher matcher;
+        private final MatchConsumer consumer;
+        private final AtomicBoolean cancelled;
+
+        FilesTask(List<Path> files, long[] sizes, long[] lastModifiedTimes, int from, int to, Matcher matcher,
+                  MatchConsumer consumer, AtomicBoolean cancelled) {
+            this.files = files;
+            this.sizes = sizes;
+            this.lastModifiedTimes = lastModifiedTimes;
+            this.from = from;
+            this.to = to;
+            this.matcher = matcher;
+            this.consumer = consumer;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > FILES_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new FilesTask(files, sizes, lastModifiedTimes, from, middle, matcher, consumer, cancelled),
+                        new FilesTask(files, sizes, lastModifiedTimes, middle, to, matcher, consumer, cancelled));
+                return;
+            }
+            for (int i = from; i < to && !cancelled.get(); i++) {
+                Path file = files.get(i);
+                if (sizes != null) {
+                    searchFile(file, sizes[i], lastModifiedTimes[i], matcher, consumer);
+                    continue;
+                }
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                    if (attrs.isRegularFile()) {
+                        searchFile(file, attrs.size(), attrs.lastModifiedTime().toMillis(), matcher, consumer);
+                    }
+                } catch (IOException e) {
+                    skippedFiles.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Lists one directory, then searches its files and subdirectories as separate tasks, like
+     * {@link DriveScanner}.
+     */
+    private class DirectoryTask extends RecursiveAction {
+        private final Path directory;
+        private final Matcher matcher;
+        private final MatchConsumer consumer;
+        private final AtomicBoolean cancelled;
+
+        DirectoryTask(Path directory, Matcher matcher, MatchConsumer consumer, AtomicBoolean cancelled) {
+            this.directory = directory;
+            this.matcher = matcher;
+            this.consumer = consumer;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled.get()) {
+                return;
+            }
+
+            List<RecursiveAction> subTasks = new ArrayList<>();
+            List<Path> files = new ArrayList<>();
+            List<BasicFileAttributes> fileAttrs = new ArrayList<>();
+            try {
+                Files.walkFileTree(directory, NO_OPTIONS, 1, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (cancelled.get()) {
+                            return FileVisitResult.TERMINATE;
+                        }
+                        if (attrs.isDirectory()) {
+                            subTasks.add(new DirectoryTask(file, matcher, consumer, cancelled));
+                        } else if (attrs.isRegularFile()) {
+                            files.add(file);
+                            fileAttrs.add(attrs);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                return;
+            }
+
+            if (!files.isEmpty()) {
+                long[] sizes = new long[files.size()];
+                long[] lastModifiedTimes = new long[files.size()];
+                for (int i = 0; i < sizes.length; i++) {
+                    sizes[i] = fileAttrs.get(i).size();
+                    lastModifiedTimes[i] = fileAttrs.get(i).lastModifiedTime().toMillis();
+                }
+                subTasks.add(new FilesTask(files, sizes, lastModifiedTimes, 0, files.size(), matcher, consumer, cancelled));
+            }
+            invokeAll(subTasks);
+        }
+    }
+}
@@ -1,12 +1,11 @@
 package org.example.fileexplorerjavafx;
 
+import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
-import javafx.collections.transformation.FilteredList;
-import javafx.collections.transformation.SortedList;
 import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
@@ -21,8 +20,13 @@ import javafx.scene.image.ImageView;
 import javafx.stage.Stage;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
 public class DashboardController implements Initializable {
@@ -33,6 +37,9 @@ public class DashboardController implements Initializable {
     @FXML
     private ComboBox<Drive> drpDrives;
 
+    @FXML
+    private ComboBox<String> drpBreakdown;
+
     @FXML
     private TabPane mainTabPane;
 
@@ -66,22 +73,84 @@ public class DashboardController implements Initializable {
     @FXML
     private Pagination pagination;
 
+    @FXML
+    private CheckBox chkShowAll, chkContents;
+
     private DashboardUtility utility;
-    private Set<FileEnhanced> origFileEnhanceds;
+    private FileResultStore store;
+    private Map<FileType, Map<SortedRowIndex.SortKey, SortedRowIndex>> sortIndexes;
+    private SortedRowIndex.SortKey sortKey = SortedRowIndex.SortKey.NAME;
+    private boolean sortDescending;
+    private ResultListAdapter resultList;
+    private NameSearchIndex nameSearch;
+    private ContentSearcher contentSearcher;
+    private ObservableList<FileEnhanced> contentResults;
+    private String nameFilter = "";
+    private boolean showAllRows;
     private FileType selectedFileType;
+    private Drive scannedDrive;
+    private boolean scanComplete;
+    private boolean rescanPending;
+    private int scanGeneration;
+    private ScanWatcher watcher;
+    private BatchQueue<ScannedFile> scanResults;
+    private AnimationTimer scanDrainTimer;
+    private ScanMetrics scanMetrics;
     private volatile boolean searching = true;
+    private StorageBreakdown storageBreakdown;
+    private DuplicateFinder duplicateFinder;
+    private StorageBreakdown.Result breakdown;
+    private Drive breakdownDrive;
+    private int breakdownGeneration;
+    private Task<DuplicateFinder.Result> duplicateTask;
 
     private static final int ROWS_PER_PAGE = 100;
+    private static final long STATUS_INTERVAL_NANOS = 250_000_000L;
+    private static final int TOP_FOLDERS = 8;
+    private static final FileType[] DUPLICATE_TYPES = {FileType.Images, FileType.Videos, FileType.Music};
+    private static final String BREAKDOWN_USED = "Used and Free";
+    private static final String BREAKDOWN_CATEGORIES = "By Category";
+    private static final String BREAKDOWN_FOLDERS = "By Folder";
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
         utility = new DashboardUtility();
-        origFileEnhanceds = new LinkedHashSet<>();
+        store = new FileResultStore();
+        sortIndexes = new EnumMap<>(FileType.class);
+        resultList = new ResultListAdapter(store);
+        nameSearch = new NameSearchIndex(store);
+        contentSearcher = new ContentSearcher(Runtime.getRuntime().availableProcessors());
+        int workers = Integer.getInteger(DashboardUtility.SCAN_WORKERS_PROPERTY, Runtime.getRuntime().availableProcessors());
+        storageBreakdown = new StorageBreakdown(workers);
+        duplicateFinder = new DuplicateFinder(workers);
+        selectedFileType = FileType.Documents;
+
+        drpBreakdown.setItems(FXCollections.observableArrayList(BREAKDOWN_USED, BREAKDOWN_CATEGORIES, BREAKDOWN_FOLDERS));
+        drpBreakdown.getSelectionModel().selectFirst();
 
         colFileName.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getFileName()));
         colFileSize.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getFileSize()));
         colFileType.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getFileType().toString()));
 
+        listDataTableView.setSortPolicy(table -> {
+            if (contentResults != null) {
+                return TableView.DEFAULT_SORT_POLICY.call(table);
+            }
+            applySortOrder();
+            return true;
+        });
+
+        inpSearch.textProperty().addListener((obs, oldVal, newVal) -> {
+            if (!chkContents.isSelected()) {
+                applySearch(newVal);
+            }
+        });
+        inpSearch.setOnAction(event -> {
+            if (chkContents.isSelected()) {
+                searchContents(inpSearch.getText());
+            }
+        });
+
         loadDriveData();
         initializeTabs();
 
@@ -90,24 +159,123 @@ public class DashboardController implements Initializable {
 
 
     private Node createPage(int pageIndex) {
-        List<FileEnhanced> sortedFiles = new ArrayList<>(origFileEnhanceds);
-        sortedFiles.sort(Comparator.comparing(FileEnhanced::getFileName));
+        SortedRowIndex index = getSortIndex(selectedFileType, sortKey);
+        int count = index.size();
 
         int fromIndex = pageIndex * ROWS_PER_PAGE;
-        int toIndex = Math.min(fromIndex + ROWS_PER_PAGE, sortedFiles.size());
+        int toIndex = Math.min(fromIndex + ROWS_PER_PAGE, count);
 
-        if (fromIndex >= sortedFiles.size()) {
-            listDataTableView.setItems(FXCollections.observableArrayList());
-        } else {
-            ObservableList<FileEnhanced> currentPageItems = FXCollections.observableArrayList(
-                    sortedFiles.subList(fromIndex, toIndex)
-            );
-            listDataTableView.setItems(currentPageItems);
+        ObservableList<FileEnhanced> currentPageItems = FXCollections.observableArrayList();
+        for (int i = fromIndex; i < toIndex; i++) {
+            currentPageItems.add(store.get(index.get(sortDescending ? count - 1 - i : i)));
         }
+        listDataTableView.setItems(currentPageItems);
 
         return new AnchorPane();
     }
 
+    /**
+     * Returns the sorted index of a category for a sort key, building it on first use. Once built,
+     * an index is kept up to date incrementally as rows arrive.
+     */
+    private SortedRowIndex getSortIndex(FileType fileType, SortedRowIndex.SortKey key) {
+        return sortIndexes.computeIfAbsent(fileType, type -> new EnumMap<>(SortedRowIndex.SortKey.class))
+                .computeIfAbsent(key, k -> new SortedRowIndex(store, fileType, k));
+    }
+
+    /**
+     * Feeds a stored row into the sorted indexes already built for its category.
+     */
+    private void indexRow(int row, FileType fileType) {
+        Map<SortedRowIndex.SortKey, SortedRowIndex> indexes = sortIndexes.get(fileType);
+        if (indexes != null) {
+            for (SortedRowIndex index : indexes.values()) {
+                index.add(row);
+            }
+        }
+    }
+
+    private void invalidateSortIndexes() {
+        for (Map<SortedRowIndex.SortKey, SortedRowIndex> indexes : sortIndexes.values()) {
+            for (SortedRowIndex index : indexes.values()) {
+                index.invalidate();
+            }
+        }
+    }
+
+    /**
+     * Maps the table's column sort order onto the result indexes, so clicking a column header sorts
+     * the whole result set instead of just the visible page.
+     */
+    private void applySortOrder() {
+        SortedRowIndex.SortKey key = SortedRowIndex.SortKey.NAME;
+        boolean descending = false;
+
+        if (!listDataTableView.getSortOrder().isEmpty()) {
+            TableColumn<FileEnhanced, ?> column = listDataTableView.getSortOrder().get(0);
+            if (column == colFileSize) {
+                key = SortedRowIndex.SortKey.SIZE;
+            } else if (column == colFileType) {
+                key = SortedRowIndex.SortKey.TYPE;
+            }
+            descending = column.getSortType() == TableColumn.SortType.DESCENDING;
+        }
+
+        if (key != sortKey || descending != sortDescending) {
+            sortKey = key;
+            sortDescending = descending;
+            refreshResults();
+        }
+    }
+
+    /**
+     * Re-renders the results after their content or order changed: the current page in paged mode,
+     * the whole virtualized list otherwise.
+     */
+    private void refreshResults() {
+        if (contentResults != null) {
+            return;
+        }
+        if (!nameFilter.isEmpty()) {
+            resultList.setIndex(ResultListAdapter.Rows.of(sortSearchHits(nameSearch.search(nameFilter, selectedFileType))),
+                    sortDescending);
+        } else if (showAllRows) {
+            resultList.setIndex(getSortIndex(selectedFileType, sortKey), sortDescending);
+        } else {
+            createPage(pagination.getCurrentPageIndex());
+        }
+    }
+
+    /**
+     * Switches between 100-row pages and a single virtualized table over the whole category,
+     * which only materializes the rows that are on screen.
+     */
+    @FXML
+    public void toggleViewMode() {
+        showAllRows = chkShowAll.isSelected();
+        updateViewMode();
+    }
+
+    /**
+     * Shows the virtualized list while showing all rows or search results, and the pages otherwise.
+     */
+    private void updateViewMode() {
+        if (contentResults != null) {
+            return;
+        }
+        boolean virtualized = showAllRows || !nameFilter.isEmpty();
+        pagination.setVisible(!virtualized);
+        pagination.setManaged(!virtualized);
+
+        if (virtualized) {
+            listDataTableView.setItems(resultList);
+            refreshResults();
+        } else {
+            resultList.setIndex(null, false);
+            pagination.setPageFactory(this::createPage);
+        }
+    }
+
     private void loadDriveData() {
         ObservableList<Drive> drives = FXCollections.observableArrayList(DashboardUtility.getAllDrives());
         drpDrives.setItems(drives);
@@ -160,8 +328,11 @@ public class DashboardController implements Initializable {
         }
     }
 
+    /**
+     * Shows the files of the given category. The first request for a drive starts a single scan that
+     * fills every category at once; later requests only switch the displayed bucket.
+     */
     private void loadFilesByType(FileType fileType) {
-        this.selectedFileType = fileType;
         Drive selectedDrive = drpDrives.getSelectionModel().getSelectedItem();
 
         if (selectedDrive == null) {
@@ -169,45 +340,107 @@ public class DashboardController implements Initializable {
             return;
         }
 
-        System.out.println("Starting file search for type: " + fileType + " on drive: " + selectedDrive.getDriveName());
+        if (selectedDrive != scannedDrive || (!searching && !scanComplete)) {
+            scanDrive(selectedDrive);
+        }
+        showCategory(fileType);
+    }
+
+    private void showCategory(FileType fileType) {
+        this.selectedFileType = fileType;
+        lblFileType.setText(fileType + " Files");
+        updatePageCount();
+        if (contentResults != null) {
+            searchContents(inpSearch.getText());
+        } else if (showAllRows || !nameFilter.isEmpty()) {
+            listDataTableView.setItems(resultList);
+            refreshResults();
+        } else {
+            pagination.setPageFactory(this::createPage);
+        }
+    }
+
+    private void updatePageCount() {
+        int pageCount = (int) Math.ceil((double) store.count(selectedFileType) / ROWS_PER_PAGE);
+        pagination.setPageCount(Math.max(pageCount, 1));
+    }
+
+    private void scanDrive(Drive selectedDrive) {
+        Log.info("Starting file search on drive: " + selectedDrive.getDriveName());
 
+        utility.cancelSearch();
+        stopScanDelivery();
         utility.reset();
-        origFileEnhanceds.clear();
+        store.clear();
+        sortIndexes.clear();
+        nameSearch.clear();
+        resultList.setIndex(null, false);
+        scannedDrive = selectedDrive;
+        scanComplete = false;
+        rescanPending = false;
+        int generation = ++scanGeneration;
+        ScanWatcher scanWatcher = startWatcher(generation);
         hboxLoad.setVisible(true);
-        lblLoad.setText("Fetching " + fileType + " files...");
+        lblLoad.setText("Fetching files...");
         searching = true;
 
+        BatchQueue<ScannedFile> results = new BatchQueue<>();
+        ScanMetrics metrics = new ScanMetrics(results::size);
+        scanResults = results;
+        scanMetrics = metrics;
+        scanDrainTimer = new AnimationTimer() {
+            private long lastStatus;
+
+            @Override
+            public void handle(long now) {
+                addScanResults(results.drain());
+                if (now - lastStatus >= STATUS_INTERVAL_NANOS) {
+                    lblLoad.setText(metrics.toString());
+                    lastStatus = now;
+                }
+            }
+        };
+        scanDrainTimer.start();
+
+        utility.prepareSearch();
         Task<Void> fileLoadingTask = new Task<>() {
             @Override
             protected Void call() {
-                utility.searchFilesInBatches(selectedDrive.getFile(), fileType, batch -> {
-                    if (!searching) {
-                        return;
-                    }
-
-                    Platform.runLater(() -> {
-                        boolean isNewData = origFileEnhanceds.addAll(batch);
-                        if (isNewData) {
-                            int pageCount = (int) Math.ceil((double) origFileEnhanceds.size() / ROWS_PER_PAGE);
-                            pagination.setPageCount(pageCount);
-
+                utility.searchAllFilesInBatches(selectedDrive.getFile(), batch -> {
+                    if (searching) {
+                        List<ScannedFile> scanned = new ArrayList<>(batch.size());
+                        for (FileEnhanced file : batch) {
+                            scanned.add(new ScannedFile(file, NameSearchIndex.trigrams(file.getFileName())));
                         }
-                        System.out.println("Displayed a batch of " + batch.size() + " files.");
-                    });
-                });
+                        results.put(scanned);
+                    }
+                }, scanWatcher == null ? null : scanWatcher::register, metrics);
                 return null;
             }
         };
 
         fileLoadingTask.setOnSucceeded(event -> {
+            if (generation != scanGeneration) {
+                return;
+            }
+            stopScanDelivery();
             hboxLoad.setVisible(false);
-            lblFileType.setText(fileType + " Files");
-            int pageCount = (int) Math.ceil((double) origFileEnhanceds.size() / ROWS_PER_PAGE);
-            pagination.setPageCount(pageCount);
-            System.out.println("File search completed.");
+            scanComplete = searching;
+            searching = false;
+            updatePageCount();
+            Log.info("File search completed: " + metrics);
+            if (scanComplete && rescanPending) {
+                rescan();
+            }
         });
 
         fileLoadingTask.setOnFailed(event -> {
+            if (generation != scanGeneration) {
+                return;
+            }
+            Log.error("File search failed", fileLoadingTask.getException());
+            stopScanDelivery();
+            searching = false;
             hboxLoad.setVisible(false);
             showWarning("Error fetching files. Please try again.");
         });
@@ -215,30 +448,404 @@ public class DashboardController implements Initializable {
         new Thread(fileLoadingTask).start();
     }
 
+    /**
+     * Gets the counters of the current or last drive scan, or null if no scan was started.
+     */
+    public ScanMetrics getScanMetrics() {
+        return scanMetrics;
+    }
+
+    /**
+     * Adds the files the scan delivered since the last pulse to the store and the indexes, and
+     * refreshes the view once.
+     */
+    private void addScanResults(List<ScannedFile> files) {
+        if (files.isEmpty()) {
+            return;
+        }
+        boolean isNewData = false;
+        for (ScannedFile scanned : files) {
+            FileEnhanced file = scanned.file;
+            int row = store.add(file);
+            indexRow(row, file.getFileType());
+            nameSearch.add(row, scanned.trigrams);
+            isNewData |= file.getFileType() == selectedFileType;
+        }
+        if (isNewData) {
+            updatePageCount();
+            if (!nameFilter.isEmpty()) {
+                refreshResults();
+            } else if (showAllRows) {
+                resultList.refresh();
+            }
+        }
+        Log.trace(() -> "Displayed " + files.size() + " files.");
+    }
+
+    /**
+     * Takes the last results of the running scan and stops delivering them. Scan workers waiting
+     * for the UI are released and drop their batches.
+     */
+    private void stopScanDelivery() {
+        if (scanResults != null) {
+            scanResults.close();
+            scanDrainTimer.stop();
+            addScanResults(scanResults.drain());
+            scanResults = null;
+            scanDrainTimer = null;
+        }
+    }
+
+    /**
+     * Starts watching the directories of a new scan so its results stay current afterwards.
+     */
+    private ScanWatcher startWatcher(int generation) {
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+        try {
+            watcher = new ScanWatcher(utility::classifyFileName,
+                    changes -> Platform.runLater(() -> applyChanges(changes, generation)));
+        } catch (IOException e) {
+            Log.error("Could not watch the scanned directories", e);
+        }
+        return watcher;
+    }
+
+    /**
+     * Applies one coalesced batch of file system changes to the category results and the visible page.
+     */
+    private void applyChanges(ScanWatcher.Changes changes, int generation) {
+        if (generation != scanGeneration) {
+            return;
+        }
+
+        boolean rowsChanged = false;
+        List<String> removedDirectories = new ArrayList<>();
+        for (File removed : changes.getRemoved()) {
+            if (store.remove(removed)) {
+                rowsChanged = true;
+            } else {
+                removedDirectories.add(removed.getAbsolutePath());
+            }
+        }
+        if (!removedDirectories.isEmpty() && store.removeBelow(removedDirectories) > 0) {
+            rowsChanged = true;
+        }
+
+        // New rows and rows whose size changed are queued into the sort indexes of their category.
+        // Only rows that were deleted, revived or moved to another category invalidate the indexes
+        // and the last name search result.
+        for (FileEnhanced updated : changes.getUpdated()) {
+            int existing = store.rowOf(updated);
+            byte previousType = existing < 0 ? -1 : store.getTypeCode(existing);
+            int row = store.add(updated);
+            if (existing >= 0 && previousType != store.getTypeCode(row)) {
+                rowsChanged = true;
+            }
+            indexRow(row, updated.getFileType());
+        }
+        nameSearch.update();
+        if (rowsChanged) {
+            invalidateSortIndexes();
+            nameSearch.invalidate();
+        }
+
+        updatePageCount();
+        refreshResults();
+
+        if (changes.isRescanNeeded()) {
+            if (scanComplete) {
+                rescan();
+            } else if (searching) {
+                rescanPending = true;
+            }
+        }
+    }
+
+    /**
+     * Scans the drive again after the watcher lost events, so the results do not silently go stale.
+     * A scan that was stopped by the user is left alone; selecting a category scans it again.
+     */
+    private void rescan() {
+        Log.info("File system events were lost, scanning " + scannedDrive.getDriveName() + " again.");
+        scanDrive(scannedDrive);
+        if (selectedFileType != null) {
+            showCategory(selectedFileType);
+        }
+    }
+
     @FXML
     public void stopSearch() {
+        contentSearcher.cancel();
+        duplicateFinder.cancel();
         searching = false;
+        utility.cancelSearch();
+        stopScanDelivery();
         hboxLoad.setVisible(false);
         lblLoad.setText("Search stopped. Displaying current files.");
-        System.out.println("Search stopped by the user.");
+        Log.info("Search stopped by the user: " + (scanMetrics == null ? "no scan" : scanMetrics.toString()));
     }
 
     @FXML
     public void searchFiles() {
-        ObservableList<FileEnhanced> observableList = FXCollections.observableArrayList(origFileEnhanceds);
-        FilteredList<FileEnhanced> filteredData = new FilteredList<>(observableList, s -> true);
-        inpSearch.textProperty().addListener((obs, oldVal, newVal) -> {
-            filteredData.setPredicate(file -> {
-                if (newVal == null || newVal.isEmpty()) {
-                    return true;
-                }
-                String lowerCaseFilter = newVal.toLowerCase();
-                return file.getFile().getName().toLowerCase().contains(lowerCaseFilter);
-            });
+        applySearch(inpSearch.getText());
+    }
+
+    /**
+     * Filters the current category by a case-insensitive name substring. The name index answers
+     * each keystroke, and a query that extends the previous one only re-checks the previous hits.
+     */
+    private void applySearch(String query) {
+        String filter = query == null ? "" : query.trim();
+        if (filter.equals(nameFilter)) {
+            return;
+        }
+        boolean wasFiltering = !nameFilter.isEmpty();
+        nameFilter = filter;
+
+        if (wasFiltering != !filter.isEmpty()) {
+            updateViewMode();
+        } else {
+            refreshResults();
+        }
+    }
+
+    /**
+     * Switches the search box between filtering names as you type and searching file contents on Enter.
+     */
+    @FXML
+    public void toggleContentSearch() {
+        contentSearcher.cancel();
+        contentResults = null;
+        nameFilter = "";
+        if (chkContents.isSelected()) {
+            updateViewMode();
+        } else {
+            applySearch(inpSearch.getText());
+            if (nameFilter.isEmpty()) {
+                updateViewMode();
+            }
+        }
+    }
+
+    /**
+     * Searches the contents of the current category's files in the background. Matches stream into
+     * the table as they are found, coalesced into one update per pulse. The sizes and modification
+     * times the scan recorded are passed along, so the files are not read from the disk twice.
+     */
+    private void searchContents(String query) {
+        contentSearcher.cancel();
+        if (query == null || query.isBlank()) {
+            contentResults = null;
+            updateViewMode();
+            return;
+        }
+
+        int[] rows = store.rows(selectedFileType);
+        List<Path> files = new ArrayList<>(rows.length);
+        long[] sizes = new long[rows.length];
+        long[] lastModifiedTimes = new long[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            files.add(Paths.get(store.getParentPath(rows[i]), store.getFileName(rows[i])));
+            sizes[i] = store.getSize(rows[i]);
+            lastModifiedTimes[i] = store.getLastModified(rows[i]);
+        }
+
+        ObservableList<FileEnhanced> results = FXCollections.observableArrayList();
+        contentResults = results;
+        pagination.setVisible(false);
+        pagination.setManaged(false);
+        listDataTableView.setItems(results);
+        hboxLoad.setVisible(true);
+        lblLoad.setText("Searching contents of " + files.size() + " files...");
+
+        FileType fileType = selectedFileType;
+        ConcurrentLinkedQueue<FileEnhanced> found = new ConcurrentLinkedQueue<>();
+        AtomicBoolean drainScheduled = new AtomicBoolean();
+        Runnable drain = () -> {
+            drainScheduled.set(false);
+            List<FileEnhanced> batch = new ArrayList<>();
+            for (FileEnhanced file; (file = found.poll()) != null; ) {
+                batch.add(file);
+            }
+            if (contentResults == results) {
+                results.addAll(batch);
+            }
+        };
+
+        Task<Boolean> task = new Task<>() {
+            @Override
+            protected Boolean call() {
+                return contentSearcher.search(files, sizes, lastModifiedTimes, query, (file, size, lastModified) -> {
+                    found.add(new FileEnhanced(file.toFile(), fileType, size, lastModified));
+                    if (drainScheduled.compareAndSet(false, true)) {
+                        Platform.runLater(drain);
+                    }
+                });
+            }
+        };
+        task.setOnSucceeded(event -> {
+            if (contentResults != results) {
+                return;
+            }
+            drain.run();
+            hboxLoad.setVisible(false);
+            Log.info("Content search matched " + results.size() + " of " + contentSearcher.getSearchedFiles()
+                    + " files, skipped " + contentSearcher.getSkippedFiles() + ".");
+        });
+        task.setOnFailed(event -> {
+            Log.error("Content search failed", task.getException());
+            if (contentResults != results) {
+                return;
+            }
+            hboxLoad.setVisible(false);
+            showWarning("Error searching file contents.");
+        });
+        new Thread(task).start();
+    }
+
+    /**
+     * Looks for duplicate images, videos and music among the scanned files in the background and
+     * shows the groups found. Only files that share their size with another one are compared.
+     */
+    @FXML
+    public void findDuplicates() {
+        // A new search replaces one still running; the old one stops and its groups are dropped.
+        if (duplicateTask != null) {
+            duplicateTask.cancel();
+            duplicateTask = null;
+        }
+        if (scannedDrive == null) {
+            showWarning("Please select a drive and load a category first.");
+            return;
+        }
+
+        int total = 0;
+        for (FileType fileType : DUPLICATE_TYPES) {
+            total += store.count(fileType);
+        }
+        int[] rows = new int[total];
+        int count = 0;
+        for (FileType fileType : DUPLICATE_TYPES) {
+            for (int row : store.rows(fileType)) {
+                rows[count++] = row;
+            }
+        }
+        long[] sizes = new long[count];
+        for (int i = 0; i < count; i++) {
+            sizes[i] = store.getSize(rows[i]);
+        }
+
+        int[] candidates = DuplicateFinder.sameSizeFiles(sizes);
+        Path[] files = new Path[candidates.length];
+        long[] candidateSizes = new long[candidates.length];
+        for (int i = 0; i < candidates.length; i++) {
+            int row = rows[candidates[i]];
+            files[i] = Paths.get(store.getParentPath(row), store.getFileName(row));
+            candidateSizes[i] = sizes[candidates[i]];
+        }
+
+        hboxLoad.setVisible(true);
+        lblLoad.setText("Looking for duplicates among " + files.length + " files...");
+
+        Task<DuplicateFinder.Result> task = new Task<>() {
+            @Override
+            protected DuplicateFinder.Result call() {
+                return duplicateFinder.find(files, candidateSizes, this::updateMessage, this::isCancelled);
+            }
+        };
+        duplicateTask = task;
+        task.messageProperty().addListener((obs, oldVal, newVal) -> {
+            if (duplicateTask == task) {
+                lblLoad.setText(newVal);
+            }
+        });
+        task.setOnSucceeded(event -> {
+            if (duplicateTask != task) {
+                return;
+            }
+            duplicateTask = null;
+            hboxLoad.setVisible(false);
+            Log.info("Duplicate search read " + duplicateFinder.getBytesRead() + " bytes of "
+                    + files.length + " candidate files.");
+            showDuplicates(task.getValue());
+        });
+        task.setOnFailed(event -> {
+            if (duplicateTask != task) {
+                return;
+            }
+            duplicateTask = null;
+            Log.error("Duplicate search failed", task.getException());
+            hboxLoad.setVisible(false);
+            showWarning("Error looking for duplicate files.");
         });
-        SortedList<FileEnhanced> sortedData = new SortedList<>(filteredData);
-        sortedData.comparatorProperty().bind(listDataTableView.comparatorProperty());
-        listDataTableView.setItems(sortedData);
+        new Thread(task).start();
+    }
+
+    /**
+     * Shows groups of duplicate files as a tree, one branch per group. The result of a stopped
+     * search is labelled as partial.
+     */
+    private void showDuplicates(DuplicateFinder.Result result) {
+        List<DuplicateFinder.Group> groups = result.getGroups();
+        if (groups.isEmpty()) {
+            new Alert(Alert.AlertType.INFORMATION, result.isComplete() ? "No duplicate files found."
+                    : "The search was stopped before any duplicate files were found.").show();
+            return;
+        }
+
+        TreeItem<String> root = new TreeItem<>();
+        long wasted = 0;
+        for (DuplicateFinder.Group group : groups) {
+            TreeItem<String> item = new TreeItem<>(group.getFiles().size() + " copies of " + FileEnhanced.formatSize(group.getSize()));
+            for (Path file : group.getFiles()) {
+                item.getChildren().add(new TreeItem<>(file.toString()));
+            }
+            root.getChildren().add(item);
+            wasted += group.getWastedBytes();
+        }
+        TreeView<String> tree = new TreeView<>(root);
+        tree.setShowRoot(false);
+        tree.setPrefSize(700, 400);
+
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle(result.isComplete() ? "Duplicate Files" : "Duplicate Files (partial)");
+        alert.setHeaderText((result.isComplete() ? "" : "The search was stopped, these are the duplicates found so far. ")
+                + groups.size() + " groups of duplicates, " + FileEnhanced.formatSize(wasted) + " could be freed.");
+        alert.getDialogPane().setContent(tree);
+        alert.setResizable(true);
+        alert.show();
+    }
+
+
+    /**
+     * Puts search hits into the current sort order. Large hit sets are taken from the category's
+     * sorted index in one pass instead of being sorted again.
+     */
+    private int[] sortSearchHits(int[] hits) {
+        SortedRowIndex index = getSortIndex(selectedFileType, sortKey);
+        int count = index.size();
+        if (hits.length * 8L < count) {
+            int[] sorted = hits.clone();
+            FileResultStore.sortRows(sorted, 0, sorted.length, SortedRowIndex.comparator(store, sortKey));
+            return sorted;
+        }
+
+        BitSet hitRows = new BitSet();
+        for (int row : hits) {
+            hitRows.set(row);
+        }
+        int[] sorted = new int[hits.length];
+        int found = 0;
+        for (int i = 0; i < count && found < sorted.length; i++) {
+            int row = index.get(i);
+            if (hitRows.get(row)) {
+                sorted[found++] = row;
+            }
+        }
+        return found == sorted.length ? sorted : Arrays.copyOf(sorted, found);
     }
 
     private void showWarning(String message) {
@@ -253,17 +860,21 @@ public class DashboardController implements Initializable {
         Drive selectedDrive = drpDrives.getSelectionModel().getSelectedItem();
 
         if (selectedDrive != null) {
-            System.out.println("Selected Drive: " + selectedDrive.getDriveName());
-            System.out.println("Total Space (bytes): " + selectedDrive.getTotalSpaceBytes());
-            System.out.println("Used Space (bytes): " + selectedDrive.getUsedSpaceBytes());
-            System.out.println("Free Space (bytes): " + selectedDrive.getFreeSpaceBytes());
+            Log.debug(() -> "Selected drive " + selectedDrive.getDriveName() + ": total " + selectedDrive.getTotalSpaceBytes()
+                    + " bytes, used " + selectedDrive.getUsedSpaceBytes() + " bytes, free " + selectedDrive.getFreeSpaceBytes() + " bytes");
 
             long usedSpaceBytes = selectedDrive.getUsedSpaceBytes();
             long freeSpaceBytes = selectedDrive.getFreeSpaceBytes();
 
             if (usedSpaceBytes == 0 && freeSpaceBytes == 0) {
-                System.out.println("Warning: Both used and free space are 0. PieChart will not show anything.");
+                Log.warn("Both used and free space are 0. PieChart will not show anything.");
+            } else if (!BREAKDOWN_USED.equals(drpBreakdown.getValue())) {
+                lblUsed.setText(selectedDrive.getUsedSpace());
+                lblFree.setText(selectedDrive.getFreeSpace());
+                hboxStatus.setVisible(true);
+                analyzeStorage(selectedDrive);
             } else {
+                spaceChart.setTitle(null);
                 ObservableList<PieChart.Data> pieChartData = FXCollections.observableArrayList(
                         new PieChart.Data("Used Space", usedSpaceBytes),
                         new PieChart.Data("Free Space", freeSpaceBytes)
@@ -274,14 +885,118 @@ public class DashboardController implements Initializable {
                 lblFree.setText(selectedDrive.getFreeSpace());
 
                 hboxStatus.setVisible(true);
-                System.out.println("PieChart and labels updated successfully.");
+                Log.debug("PieChart and labels updated successfully.");
             }
-        } else {
-            System.out.println("Error: No drive selected.");
+        } else if (event.getSource() != drpBreakdown) {
+            Log.warn("No drive selected.");
             showWarning("Please select a drive.");
         }
     }
 
+    /**
+     * Shows where the space of a drive went, measuring it in the background the first time. The
+     * chart follows the measurement as it runs.
+     */
+    private void analyzeStorage(Drive drive) {
+        if (breakdownDrive == drive) {
+            if (breakdown != null) {
+                showBreakdown(breakdown);
+            }
+            return;
+        }
+
+        storageBreakdown.cancel();
+        int generation = ++breakdownGeneration;
+        breakdownDrive = drive;
+        breakdown = null;
+        spaceChart.setData(FXCollections.observableArrayList());
+        spaceChart.setTitle("Measuring " + drive.getDriveName() + "...");
+
+        Task<StorageBreakdown.Result> task = new Task<>() {
+            @Override
+            protected StorageBreakdown.Result call() {
+                return storageBreakdown.analyze(drive.getFile().toPath(), utility::classifyFileName,
+                        partial -> Platform.runLater(() -> {
+                            if (generation == breakdownGeneration) {
+                                breakdown = partial;
+                                showBreakdown(partial);
+                            }
+                        }));
+            }
+        };
+
+        task.setOnSucceeded(event -> {
+            if (generation != breakdownGeneration) {
+                return;
+            }
+            breakdown = task.getValue();
+            showBreakdown(breakdown);
+            Log.info("Measured " + breakdown.getFileCount() + " files in " + breakdown.getDirectoryCount()
+                    + " folders on " + drive.getDriveName() + ".");
+        });
+
+        task.setOnFailed(event -> {
+            if (generation != breakdownGeneration) {
+                return;
+            }
+            Log.error("Measuring " + drive.getDriveName() + " failed", task.getException());
+            breakdownDrive = null;
+            spaceChart.setTitle(null);
+            showWarning("Error measuring the drive. Please try again.");
+        });
+
+        new Thread(task).start();
+    }
+
+    /**
+     * Fills the chart with the category or largest folder slices of a breakdown, plus the free space.
+     */
+    private void showBreakdown(StorageBreakdown.Result result) {
+        List<String> names = new ArrayList<>();
+        List<Long> values = new ArrayList<>();
+        if (BREAKDOWN_CATEGORIES.equals(drpBreakdown.getValue())) {
+            for (FileType fileType : FileType.values()) {
+                names.add(fileType.toString());
+                values.add(result.getCategoryBytes(fileType));
+            }
+            names.add("Other Files");
+            values.add(result.getOtherBytes());
+        } else if (BREAKDOWN_FOLDERS.equals(drpBreakdown.getValue())) {
+            long shown = 0;
+            for (int folder : result.getLargestFolders(TOP_FOLDERS)) {
+                names.add(result.getFolderName(folder));
+                values.add(result.getFolderBytes(folder));
+                shown += result.getFolderBytes(folder);
+            }
+            names.add("Other Folders");
+            values.add(result.getTotalBytes() - shown);
+        } else {
+            return;
+        }
+        names.add("Free Space");
+        values.add(breakdownDrive.getFreeSpaceBytes());
+
+        ObservableList<PieChart.Data> data = spaceChart.getData();
+        boolean sameSlices = data != null && data.size() == names.size();
+        for (int i = 0; sameSlices && i < names.size(); i++) {
+            sameSlices = data.get(i).getName().equals(names.get(i));
+        }
+        if (sameSlices) {
+            for (int i = 0; i < names.size(); i++) {
+                data.get(i).setPieValue(values.get(i));
+            }
+        } else {
+            ObservableList<PieChart.Data> slices = FXCollections.observableArrayList();
+            for (int i = 0; i < names.size(); i++) {
+                slices.add(new PieChart.Data(names.get(i), values.get(i)));
+            }
+            spaceChart.setData(slices);
+        }
+
+        spaceChart.setTitle(result.isComplete() ? null
+                : "Measuring " + breakdownDrive.getDriveName() + "... " + result.getFileCount() + " files");
+    }
+
     @FXML
     public void loadData(MouseEvent event) {
         if (drpDrives.getSelectionModel().getSelectedItem() != null) {
@@ -340,4 +1055,17 @@ public class DashboardController implements Initializable {
             btnStorage.setStyle("-fx-background-color:#F1F1F3;-fx-background-radius:10;-fx-text-fill:#8a8686;");
         }
     }
+
+    /**
+     * A file found by the scan, with the trigrams of its name computed on the scan thread.
+     */
+    private static final class ScannedFile {
+        private final FileEnhanced file;
+        private final int[] trigrams;
+
+        ScannedFile(FileEnhanced file, int[] trigrams) {
+            this.file = file;
+            this.trigrams = trigrams;
+        }
+    }
 }
@@ -5,15 +5,30 @@ import javafx.collections.ObservableList;
 
 import javax.swing.filechooser.FileSystemView;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.function.Consumer;
 
 public class DashboardUtility {
 
+    /**
+     * System property that overrides the number of scan worker threads.
+     */
+    public static final String SCAN_WORKERS_PROPERTY = "battuta.scan.workers";
+
     private ObservableList<FileEnhanced> fileEnhanceds;
+    private final DriveScanner scanner;
+    private final FileClassifier classifier;
 
     public DashboardUtility() {
+        this(Integer.getInteger(SCAN_WORKERS_PROPERTY, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public DashboardUtility(int scanWorkers) {
         fileEnhanceds = FXCollections.observableArrayList();
+        scanner = new DriveScanner(scanWorkers);
+        classifier = FileClassifier.getDefault();
     }
 
     /**
@@ -36,7 +51,7 @@ public class DashboardUtility {
      */
     public ObservableList<FileEnhanced> recursiveGetAllFiles(File rootFolder, FileType fileType) {
         ObservableList<FileEnhanced> fileEnhanceds = FXCollections.observableArrayList();
-        System.out.println("Searching for " + fileType.name() + " files in folder: " + rootFolder.getAbsolutePath());
+        Log.debug(() -> "Searching for " + fileType.name() + " files in folder: " + rootFolder.getAbsolutePath());
 
         if (rootFolder.isDirectory()) {
             File[] files = rootFolder.listFiles();
@@ -46,20 +61,20 @@ public class DashboardUtility {
                     if (file.isDirectory()) {
                         fileEnhanceds.addAll(recursiveGetAllFiles(file, fileType));
                     } else {
-                        if (isValidFileType(file, fileType)) {
+                        if (isValidFileType(file.getName(), fileType)) {
                             FileEnhanced enhancedFile = new FileEnhanced(file, fileType);
                             fileEnhanceds.add(enhancedFile);
 
-                            System.out.println("Found " + fileType.name() + " file: " + file.getAbsolutePath());
+                            Log.trace(() -> "Found " + fileType.name() + " file: " + file.getAbsolutePath());
                         }
                     }
                 }
             } else {
-                System.out.println("No files found or cannot access directory: " + rootFolder.getAbsolutePath());
+                Log.debug(() -> "No files found or cannot access directory: " + rootFolder.getAbsolutePath());
             }
         }
 
-        System.out.println("Found " + fileEnhanceds.size() + " " + fileType.name() + " files in: " + rootFolder.getAbsolutePath());
+        Log.debug(() -> "Found " + fileEnhanceds.size() + " " + fileType.name() + " files in: " + rootFolder.getAbsolutePath());
 
         return fileEnhanceds;
     }
@@ -73,46 +88,55 @@ public class DashboardUtility {
                 if (file.isDirectory()) {
                     recursiveFileSearch(file.listFiles(), fileType);
                 } else {
-                    if (isValidFileType(file, fileType)) {
-                        FileEnhanced fileEnhanced = new FileEnhanced();
-                        fileEnhanced.setFile(file);
-                        fileEnhanced.setFileType(fileType);
-                        fileEnhanceds.add(fileEnhanced);
+                    if (isValidFileType(file.getName(), fileType)) {
+                        fileEnhanceds.add(new FileEnhanced(file, fileType));
                     }
                 }
             }
         }
     }
 
+    /**
+     * Searches the given directory tree in parallel and reports matching files one batch per directory.
+     * Batches arrive from the scanner's worker threads, possibly concurrently.
+     */
     public void searchFilesInBatches(File rootDir, FileType fileType, Consumer<List<FileEnhanced>> batchConsumer) {
-        Set<String> visitedPaths = new HashSet<>();
-        Queue<File> queue = new LinkedList<>();
-        queue.add(rootDir);
-
-        while (!queue.isEmpty()) {
-            File currentDir = queue.poll();
-            if (visitedPaths.contains(currentDir.getAbsolutePath())) {
-                continue;
-            }
-            visitedPaths.add(currentDir.getAbsolutePath());
+        scanner.scan(rootDir, fileName -> isValidFileType(fileName, fileType) ? fileType : null, batchConsumer);
+    }
 
-            File[] files = currentDir.listFiles();
-            if (files != null) {
-                List<FileEnhanced> batch = new ArrayList<>();
-                for (File file : files) {
-                    if (file.isDirectory()) {
-                        queue.add(file);
-                    } else if (isValidFileType(file, fileType)) {
-                        batch.add(new FileEnhanced(file, fileType));
-                    }
-                }
-                if (!batch.isEmpty()) {
-                    batchConsumer.accept(batch);
-                }
+    /**
+     * Searches the given directory tree once and reports every file that belongs to any {@link FileType},
+     * tagged with its category, one batch per directory. Directories unchanged since the previous
+     * scan of the same root with the same categories are served from its persistent {@link FileIndex};
+     * the index is rewritten once a scan runs to completion. Every scanned directory is handed to the
+     * directory consumer, if one is given. Progress is counted in the given metrics.
+     */
+    public void searchAllFilesInBatches(File rootDir, Consumer<List<FileEnhanced>> batchConsumer,
+                                        Consumer<Path> directoryConsumer, ScanMetrics metrics) {
+        FileIndex index = FileIndex.load(rootDir, classifier.getFingerprint());
+        if (scanner.scan(rootDir, this::classifyFileName, batchConsumer, index, directoryConsumer, metrics)) {
+            try {
+                index.save();
+            } catch (IOException e) {
+                Log.error("Could not save the file index of " + rootDir, e);
             }
         }
     }
 
+    /**
+     * Makes the next batch search cancellable before its thread starts, see {@link DriveScanner#prepare()}.
+     */
+    public void prepareSearch() {
+        scanner.prepare();
+    }
+
+    /**
+     * Stops the running batch search.
+     */
+    public void cancelSearch() {
+        scanner.cancel();
+    }
+
     private void searchDirectory(File directory, FileType fileType, ObservableList<FileEnhanced> batch, Consumer<ObservableList<FileEnhanced>> batchCallback, int batchSize) {
         if (directory == null || !directory.isDirectory()) return;
 
@@ -121,7 +145,7 @@ public class DashboardUtility {
             for (File file : files) {
                 if (file.isDirectory()) {
                     searchDirectory(file, fileType, batch, batchCallback, batchSize);
-                } else if (isValidFileType(file, fileType)) {
+                } else if (isValidFileType(file.getName(), fileType)) {
                     batch.add(new FileEnhanced(file, fileType));
 
                     if (batch.size() >= batchSize) {
@@ -152,7 +176,7 @@ public class DashboardUtility {
             if (file.isDirectory()) {
                 searchFilesRecursively(file, fileType, batch, batchConsumer);
             } else {
-                if (isValidFileType(file, fileType)) {
+                if (isValidFileType(file.getName(), fileType)) {
                     FileEnhanced enhancedFile = new FileEnhanced(file, fileType);
                     batch.add(enhancedFile);
 
@@ -172,32 +196,22 @@ public class DashboardUtility {
     /**
      * Checks if a file matches the given file type based on its extension.
      */
-    private boolean isValidFileType(File file, FileType fileType) {
-        String extension = getFileExtension(file.getName()).toLowerCase();
-        switch (fileType) {
-            case Documents:
-                return Documents.isDocument(extension);
-            case Images:
-                return Images.isImage(extension);
-            case Videos:
-                return Videos.isVideo(extension);
-            case Music:
-                return Music.isMusic(extension);
-            case Archives:
-                return Archives.isArchive(extension);
-            case Apps:
-                return Applications.isApplication(extension);
-            default:
-                return false;
-        }
+    private boolean isValidFileType(String fileName, FileType fileType) {
+        return classifier.classify(fileName) == fileType;
+    }
+
+    /**
+     * Returns the category a file belongs to based on its extension, or null if it belongs to none.
+     */
+    public FileType classifyFile(File file) {
+        return classifyFileName(file.getName());
     }
 
     /**
-     * Extracts the file extension from a file name.
+     * Returns the category a file name belongs to based on its extension, or null if it belongs to none.
      */
-    private String getFileExtension(String fileName) {
-        int lastDotIndex = fileName.lastIndexOf('.');
-        return (lastDotIndex == -1) ? "" : fileName.substring(lastDotIndex + 1);
+    public FileType classifyFileName(String fileName) {
+        return classifier.classify(fileName);
     }
 
     /**
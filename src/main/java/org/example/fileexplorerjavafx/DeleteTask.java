@@ -0,0 +1,162 @@
+package org.example.fileexplorerjavafx;
+
+import javafx.concurrent.Task;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Deletes a file or a whole directory tree in the background. Like {@link DriveScanner}, every
+ * directory is its own task on a {@link ForkJoinPool}, so sibling subtrees are deleted in parallel.
+ * Each directory deletes its files while it is listed and deletes itself once its subdirectories
+ * are gone, so nothing beyond the directories in progress is held in memory. Symbolic links are
+ * deleted, not followed.
+ * <p>
+ * The message reports how many entries were deleted so far. Cancelling stops the delete after the
+ * directories in progress, and so does cancelling the task that runs this one as one of its steps.
+ * The value is the list of paths that could not be deleted.
+ */
+public class DeleteTask extends Task<List<Path>> {
+
+    private static final Set<FileVisitOption> NO_OPTIONS = EnumSet.noneOf(FileVisitOption.class);
+    private static final int PROGRESS_INTERVAL = 256;
+
+    private final Path root;
+    private final int workers;
+    private final AtomicLong deleted = new AtomicLong();
+    private final ConcurrentLinkedQueue<Path> failures = new ConcurrentLinkedQueue<>();
+    private final BooleanSupplier outerCancelled;
+
+    public DeleteTask(Path root, int workers) {
+        this(root, workers, () -> false);
+    }
+
+    /**
+     * @param outerCancelled tells whether the task running this delete as one of its steps was
+     *                       cancelled, which stops the delete like cancelling it directly
+     */
+    public DeleteTask(Path root, int workers, BooleanSupplier outerCancelled) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1: " + workers);
+        }
+        this.root = root;
+        this.workers = workers;
+        this.outerCancelled = outerCancelled;
+    }
+
+    /**
+     * Gets the number of entries deleted so far.
+     */
+    public long getDeletedCount() {
+        return deleted.get();
+    }
+
+    @Override
+    protected List<Path> call() {
+        updateProgress(-1, 1);
+        updateMessage("Deleting " + root + "...");
+
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(root, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            Log.warn("Could not read " + root + " to delete it: " + e.getMessage());
+            failures.add(root);
+            return new ArrayList<>(failures);
+        }
+
+        if (attrs.isDirectory()) {
+            ForkJoinPool pool = new ForkJoinPool(workers);
+            try {
+                pool.invoke(new DirectoryTask(root));
+            } finally {
+                pool.shutdown();
+            }
+        } else {
+            delete(root);
+        }
+
+        updateMessage("Deleted " + deleted.get() + " items" + (failures.isEmpty() ? "." : ", " + failures.size() + " failed."));
+        return new ArrayList<>(failures);
+    }
+
+    private boolean stopped() {
+        return isCancelled() || outerCancelled.getAsBoolean();
+    }
+
+    private void delete(Path path) {
+        try {
+            Files.delete(path);
+            long count = deleted.incrementAndGet();
+            if (count % PROGRESS_INTERVAL == 0) {
+                updateMessage("Deleting " + root + "... " + count + " items");
+            }
+        } catch (IOException e) {
+            failures.add(path);
+        }
+    }
+
+    private class DirectoryTask extends RecursiveAction {
+        private final Path directory;
+
+        DirectoryTask(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        protected void compute() {
+            if (stopped()) {
+                return;
+            }
+
+            List<DirectoryTask> subTasks = new ArrayList<>();
+            boolean[] unreadable = new boolean[1];
+            try {
+                Files.walkFileTree(directory, NO_OPTIONS, 1, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (stopped()) {
+                            return FileVisitResult.TERMINATE;
+                        }
+                        if (attrs.isDirectory()) {
+                            subTasks.add(new DirectoryTask(file));
+                        } else {
+                            delete(file);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                        unreadable[0] |= file.equals(directory);
+                        failures.add(file);
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                failures.add(directory);
+                return;
+            }
+
+            invokeAll(subTasks);
+            if (!unreadable[0] && !stopped()) {
+                delete(directory);
+            }
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package org.example.fileexplorerjavafx;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Cache of directory listings with the attributes of every entry, shared by the folder tree and
+ * the file table so a folder shown in both is read from disk once. A cached listing is used as
+ * long as the directory's modification time is unchanged and no watch event arrived for the
+ * directory since it started being read; file content changes only show up through the watch
+ * events. The {@value #MAX_DIRECTORIES} most recently used listings are kept.
+ */
+public class DirectoryListingCache {
+
+    private static final int MAX_DIRECTORIES = 64;
+
+    private final Map<Path, Listing> listings = new LinkedHashMap<>(MAX_DIRECTORIES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, Listing> eldest) {
+            if (size() > MAX_DIRECTORIES) {
+                releaseWatch(eldest.getKey(), eldest.getValue(), null);
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * Listings being read, so watch events and invalidations that arrive meanwhile reach them.
+     */
+    private final Map<Path, List<Listing>> reading = new HashMap<>();
+
+    private WatchService watchService;
+
+    public DirectoryListingCache() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            Thread thread = new Thread(this::processEvents, "listing-cache-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Lists a directory, from the cache if it is still valid.
+     */
+    public List<Entry> list(Path directory) throws IOException {
+        return list(directory, entry -> true);
+    }
+
+    /**
+     * Lists a directory, handing every entry to the visitor as soon as it is known. If the visitor
+     * returns false the listing stops and the partial result is returned without being cached.
+     */
+    public List<Entry> list(Path directory, Predicate<Entry> visitor) throws IOException {
+        long lastModified = Files.getLastModifiedTime(directory).toMillis();
+
+        Listing cached;
+        synchronized (listings) {
+            cached = listings.get(directory);
+        }
+        if (cached != null && cached.lastModified == lastModified && cached.valid) {
+            for (Entry entry : cached.entries) {
+                if (!visitor.test(entry)) {
+                    break;
+                }
+            }
+            return cached.entries;
+        }
+
+        Listing listing = new Listing(lastModified);
+        listing.watchKey = watch(directory);
+        synchronized (listings) {
+            reading.computeIfAbsent(directory, key -> new ArrayList<>(1)).add(listing);
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        boolean complete = false;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            complete = true;
+            for (Path path : stream) {
+                Entry entry = readEntry(path);
+                if (entry == null) {
+                    continue;
+                }
+                entries.add(entry);
+                if (!visitor.test(entry)) {
+                    complete = false;
+                    break;
+                }
+            }
+        } finally {
+            synchronized (listings) {
+                List<Listing> inProgress = reading.get(directory);
+                inProgress.remove(listing);
+                if (inProgress.isEmpty()) {
+                    reading.remove(directory);
+                }
+                if (complete) {
+                    // Stored even if a change arrived while reading, so the watch stays tracked; the
+                    // listing is then invalid and the next call reads the directory again.
+                    listing.entries = Collections.unmodifiableList(entries);
+                    Listing previous = listings.put(directory, listing);
+                    if (previous != null && previous.watchKey != listing.watchKey) {
+                        releaseWatch(directory, previous, listing);
+                    }
+                } else {
+                    releaseWatch(directory, listing, listings.get(directory));
+                }
+            }
+        }
+        return complete ? listing.entries : entries;
+    }
+
+    /**
+     * Drops the cached listing of a directory, after it was changed through this application.
+     */
+    public void invalidate(Path directory) {
+        synchronized (listings) {
+            Listing listing = listings.get(directory);
+            if (listing != null) {
+                listing.valid = false;
+            }
+            for (Listing inProgress : reading.getOrDefault(directory, List.of())) {
+                inProgress.valid = false;
+            }
+        }
+    }
+
+    /**
+     * Cancels the watch of a listing that is dropped, unless the directory's cached listing or one
+     * being read shares it: registering a directory twice returns the same key. Must be called
+     * while holding the lock on {@link #listings}.
+     */
+    private void releaseWatch(Path directory, Listing dropped, Listing cached) {
+        WatchKey key = dropped.watchKey;
+        if (key == null) {
+            return;
+        }
+        if (cached != null && cached.watchKey == key) {
+            return;
+        }
+        for (Listing inProgress : reading.getOrDefault(directory, List.of())) {
+            if (inProgress.watchKey == key) {
+                return;
+            }
+        }
+        key.cancel();
+    }
+
+    private static Entry readEntry(Path path) {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            try {
+                attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException ex) {
+                ex.printStackTrace();
+                return null;
+            }
+        }
+        return new Entry(path, attrs.isDirectory(), attrs.size(), attrs.lastModifiedTime().toMillis());
+    }
+
+    private WatchKey watch(Path directory) {
+        if (watchService == null) {
+            return null;
+        }
+        try {
+            return directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private void processEvents() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            key.pollEvents();
+            key.reset();
+            invalidate((Path) key.watchable());
+        }
+    }
+
+    /**
+     * One entry of a directory listing.
+     */
+    public static final class Entry {
+        private final Path path;
+        private final boolean directory;
+        private final long size;
+        private final long lastModified;
+
+        Entry(Path path, boolean directory, long size, long lastModified) {
+            this.path = path;
+            this.directory = directory;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public String getName() {
+            return path.getFileName().toString();
+        }
+
+        public boolean isDirectory() {
+            return directory;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+
+    private static final class Listing {
+        private final long lastModified;
+        private List<Entry> entries;
+        private WatchKey watchKey;
+        private volatile boolean valid = true;
+
+        Listing(long lastModified) {
+            this.lastModified = lastModified;
+        }
+    }
+}
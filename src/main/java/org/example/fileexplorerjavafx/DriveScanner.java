@@ -0,0 +1,274 @@
+package org.example.fileexplorerjavafx;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Walks a directory tree in parallel on a work-stealing {@link ForkJoinPool}.
+ * Every directory becomes its own task, so idle workers steal whole subtrees
+ * from busy ones instead of waiting on a single queue. Each directory is read with
+ * {@link Files#walkFileTree} and the {@link BasicFileAttributes} it yields are kept in the
+ * results, so the scan does one attribute read per entry and rendering needs none. With a
+ * {@link FileIndex}, each directory's attributes are read first and an unchanged indexed directory
+ * is served from the index without being opened. Symbolic links are not followed.
+ */
+public class DriveScanner {
+
+    private static final Set<FileVisitOption> NO_OPTIONS = EnumSet.noneOf(FileVisitOption.class);
+
+    private final int workers;
+    private volatile AtomicBoolean currentScan = new AtomicBoolean();
+    private final AtomicReference<AtomicBoolean> preparedScan = new AtomicReference<>();
+
+    public DriveScanner(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1: " + workers);
+        }
+        this.workers = workers;
+    }
+
+    /**
+     * Gets the number of worker threads used per scan.
+     */
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Scans the tree under the given root and hands every regular file whose name the classifier maps
+     * to a {@link FileType} to the consumer, one batch per directory. Files the classifier maps
+     * to null are skipped. The consumer is called from the worker threads and may be
+     * invoked concurrently, so it has to be thread-safe.
+     *
+     * @return true if the scan ran to completion, false if it was cancelled
+     */
+    public boolean scan(File rootDir, Function<String, FileType> classifier, Consumer<List<FileEnhanced>> batchConsumer) {
+        return scan(rootDir, classifier, batchConsumer, null, null, new ScanMetrics());
+    }
+
+    /**
+     * Scans like {@link #scan(File, Function, Consumer)}, but serves every directory whose modification
+     * time is unchanged from the given index instead of listing it, and records every visited directory
+     * into the index. The index must have been built with the same classifier. Every directory that is
+     * visited is also handed to the directory consumer, if one is given. Progress is counted in the
+     * given metrics, which are finished when the scan ends.
+     *
+     * @return true if the scan ran to completion, false if it was cancelled
+     */
+    public boolean scan(File rootDir, Function<String, FileType> classifier, Consumer<List<FileEnhanced>> batchConsumer,
+                        FileIndex index, Consumer<Path> directoryConsumer, ScanMetrics metrics) {
+        AtomicBoolean cancelled = preparedScan.getAndSet(null);
+        if (cancelled == null) {
+            cancelled = new AtomicBoolean();
+            currentScan = cancelled;
+        }
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        try {
+            pool.invoke(new DirectoryTask(rootDir.toPath(), classifier, batchConsumer, index, directoryConsumer, metrics, cancelled));
+        } finally {
+            pool.shutdown();
+            metrics.finish();
+        }
+        return !cancelled.get();
+    }
+
+    /**
+     * Makes the next scan the current one before it starts, so that {@link #cancel()} stops it even
+     * if it is called while the scan is still being handed to its thread. Call it on the thread that
+     * starts the scan, before starting it.
+     */
+    public void prepare() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        preparedScan.set(cancelled);
+        currentScan = cancelled;
+    }
+
+    /**
+     * Stops the most recently started or prepared scan. Directories that are already being listed
+     * finish, no new ones are started.
+     */
+    public void cancel() {
+        currentScan.set(true);
+    }
+
+    public boolean isCancelled() {
+        return currentScan.get();
+    }
+
+    private class DirectoryTask extends RecursiveAction {
+        private final Path directory;
+        private final Function<String, FileType> classifier;
+        private final Consumer<List<FileEnhanced>> batchConsumer;
+        private final FileIndex index;
+        private final Consumer<Path> directoryConsumer;
+        private final ScanMetrics metrics;
+        private final AtomicBoolean cancelled;
+
+        DirectoryTask(Path directory, Function<String, FileType> classifier, Consumer<List<FileEnhanced>> batchConsumer,
+                      FileIndex index, Consumer<Path> directoryConsumer, ScanMetrics metrics, AtomicBoolean cancelled) {
+            this.directory = directory;
+            this.classifier = classifier;
+            this.batchConsumer = batchConsumer;
+            this.index = index;
+            this.directoryConsumer = directoryConsumer;
+            this.metrics = metrics;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled.get()) {
+                return;
+            }
+
+            String parentPath = directory.toString();
+            DirectoryVisitor visitor = new DirectoryVisitor(parentPath);
+            FileIndex.DirectoryRecord record = null;
+            long lastModified = 0;
+            if (index != null) {
+                try {
+                    lastModified = Files.readAttributes(directory, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS)
+                            .lastModifiedTime().toMillis();
+                } catch (AccessDeniedException e) {
+                    metrics.accessDenied();
+                    return;
+                } catch (IOException e) {
+                    return;
+                }
+                record = index.lookup(parentPath, lastModified);
+            }
+            if (record == null) {
+                try {
+                    Files.walkFileTree(directory, NO_OPTIONS, 1, visitor);
+                } catch (IOException e) {
+                    return;
+                }
+                if (visitor.failed) {
+                    return;
+                }
+            }
+
+            List<DirectoryTask> subTasks = new ArrayList<>();
+            List<FileEnhanced> batch = visitor.batch;
+
+            if (record != null) {
+                for (int i = 0; i < record.getFileCount(); i++) {
+                    batch.add(new FileEnhanced(parentPath, record.getFileName(i), record.getFileType(i),
+                            record.getSize(i), record.getLastModified(i)));
+                }
+                for (String name : record.getSubdirectories()) {
+                    subTasks.add(subTask(directory.resolve(name)));
+                }
+                metrics.directoryScanned(record.getFileCount(), record.getFileCount());
+            } else {
+                for (Path subdirectory : visitor.subdirectories) {
+                    subTasks.add(subTask(subdirectory));
+                }
+                if (index != null) {
+                    record = toRecord(lastModified, visitor.subdirectories, batch);
+                }
+                metrics.directoryScanned(visitor.fileCount, batch.size());
+            }
+
+            if (index != null) {
+                index.record(parentPath, record);
+            }
+
+            if (directoryConsumer != null) {
+                directoryConsumer.accept(directory);
+            }
+
+            if (!batch.isEmpty() && !cancelled.get()) {
+                batchConsumer.accept(batch);
+            }
+
+            invokeAll(subTasks);
+        }
+
+        private DirectoryTask subTask(Path subdirectory) {
+            return new DirectoryTask(subdirectory, classifier, batchConsumer, index, directoryConsumer, metrics, cancelled);
+        }
+
+        /**
+         * Visits the entries of one directory, keeping the attributes the walk already read so no
+         * entry needs another stat call.
+         */
+        private class DirectoryVisitor extends SimpleFileVisitor<Path> {
+            private final String parentPath;
+            private final List<Path> subdirectories = new ArrayList<>();
+            private final List<FileEnhanced> batch = new ArrayList<>();
+            private int fileCount;
+            private boolean failed;
+
+            DirectoryVisitor(String parentPath) {
+                this.parentPath = parentPath;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isDirectory()) {
+                    subdirectories.add(file);
+                } else if (attrs.isRegularFile()) {
+                    fileCount++;
+                    String fileName = file.getFileName().toString();
+                    FileType fileType = classifier.apply(fileName);
+                    if (fileType != null) {
+                        batch.add(new FileEnhanced(parentPath, fileName, fileType, attrs.size(),
+                                attrs.lastModifiedTime().toMillis()));
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                if (file.equals(directory)) {
+                    failed = true;
+                    if (exc instanceof AccessDeniedException) {
+                        metrics.accessDenied();
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        }
+    }
+
+    private static FileIndex.DirectoryRecord toRecord(long lastModified, List<Path> subdirectories, List<FileEnhanced> files) {
+        String[] subdirectoryNames = new String[subdirectories.size()];
+        for (int i = 0; i < subdirectoryNames.length; i++) {
+            subdirectoryNames[i] = subdirectories.get(i).getFileName().toString();
+        }
+
+        int count = files.size();
+        String[] fileNames = new String[count];
+        long[] sizes = new long[count];
+        long[] lastModifiedTimes = new long[count];
+        byte[] fileTypes = new byte[count];
+        for (int i = 0; i < count; i++) {
+            FileEnhanced file = files.get(i);
+            fileNames[i] = file.getFileName();
+            sizes[i] = file.getSize();
+            lastModifiedTimes[i] = file.getLastModified();
+            fileTypes[i] = (byte) file.getFileType().ordinal();
+        }
+        return new FileIndex.DirectoryRecord(lastModified, subdirectoryNames, fileNames, sizes, lastModifiedTimes, fileTypes);
+    }
+}
@@ -0,0 +1,349 @@
+package org.example.fileexplorerjavafx;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Finds files with identical content in stages, so that most files are never read in full:
+ * <ol>
+ * <li>Files are grouped by size. A file with a unique size has no duplicate and is never opened.</li>
+ * <li>Files that share a size are hashed over their first and last 16 KB only. Files small enough
+ * to fit in those two blocks are hashed whole right away.</li>
+ * <li>Files whose size and partial hash still collide are hashed in full.</li>
+ * </ol>
+ * Every stage reads files in parallel on a {@link ForkJoinPool} that the finder keeps for its whole
+ * life, through direct buffers taken from the finder's own pool so the data goes from the channel
+ * to the digest without a copy on the heap. Hashes are SHA-256.
+ */
+public class DuplicateFinder {
+
+    private static final int BLOCK_SIZE = 16 * 1024;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final long REPORT_INTERVAL_NANOS = 250_000_000L;
+
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final ForkJoinPool pool;
+    private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private volatile AtomicBoolean currentRun = new AtomicBoolean();
+    private final LongAdder bytesRead = new LongAdder();
+
+    public DuplicateFinder(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1: " + workers);
+        }
+        this.pool = new ForkJoinPool(workers);
+    }
+
+    /**
+     * Returns the indexes of the files that share their size with at least one other file, sorted
+     * by size. Only these can have duplicates, so callers can use it to avoid building paths for
+     * all the others.
+     */
+    public static int[] sameSizeFiles(long[] sizes) {
+        int[] order = new int[sizes.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        FileResultStore.sortRows(order, 0, order.length, (a, b) -> Long.compare(sizes[a], sizes[b]));
+
+        int[] candidates = new int[order.length];
+        int count = 0;
+        for (int start = 0, end; start < order.length; start = end) {
+            end = start + 1;
+            while (end < order.length && sizes[order[end]] == sizes[order[start]]) {
+                end++;
+            }
+            if (end - start > 1 && sizes[order[start]] > 0) {
+                System.arraycopy(order, start, candidates, count, end - start);
+                count += end - start;
+            }
+        }
+        return Arrays.copyOf(candidates, count);
+    }
+
+    /**
+     * Finds the groups of identical files among the given ones. Empty files are ignored. The status
+     * consumer receives progress messages from the worker threads, at most every 250 ms.
+     *
+     * @return the groups, the ones wasting the most space first, marked incomplete if the run was cancelled
+     */
+    public Result find(Path[] files, long[] sizes, Consumer<String> status) {
+        return find(files, sizes, status, () -> false);
+    }
+
+    /**
+     * Finds groups like {@link #find(Path[], long[], Consumer)}, also stopping when the given
+     * condition becomes true, such as the task running the search being cancelled. Unlike
+     * {@link #cancel()}, that cannot miss a run that has not started yet.
+     */
+    public Result find(Path[] files, long[] sizes, Consumer<String> status, BooleanSupplier stopRequested) {
+        AtomicBoolean cancelRequested = new AtomicBoolean();
+        currentRun = cancelRequested;
+        BooleanSupplier cancelled = () -> cancelRequested.get() || stopRequested.getAsBoolean();
+        bytesRead.reset();
+
+        int[] candidates = sameSizeFiles(sizes);
+        long[] partialHashes = new long[files.length];
+        byte[][] digests = new byte[files.length][];
+        boolean[] failed = new boolean[files.length];
+        AtomicLong lastReport = new AtomicLong();
+
+        report(status, lastReport, true, "Comparing the start and end of " + candidates.length + " files...");
+        pool.invoke(new RangeTask(candidates, 0, candidates.length, cancelled, file -> {
+            if (sizes[file] <= 2L * BLOCK_SIZE) {
+                digests[file] = hash(files[file], sizes[file], false, failed, file);
+            } else {
+                byte[] digest = hash(files[file], sizes[file], true, failed, file);
+                partialHashes[file] = digest == null ? 0 : ByteBuffer.wrap(digest).getLong();
+            }
+            report(status, lastReport, false, "Comparing the start and end of " + candidates.length + " files, "
+                    + FileEnhanced.formatSize(bytesRead.sum()) + " read...");
+        }));
+
+        FileResultStore.sortRows(candidates, 0, candidates.length, (a, b) -> {
+            int order = Long.compare(sizes[a], sizes[b]);
+            return order != 0 ? order : Long.compare(partialHashes[a], partialHashes[b]);
+        });
+        int[] full = partialCollisions(candidates, sizes, partialHashes, digests, failed);
+
+        report(status, lastReport, true, "Comparing " + full.length + " files in full...");
+        pool.invoke(new RangeTask(full, 0, full.length, cancelled, file -> {
+            digests[file] = hash(files[file], sizes[file], false, failed, file);
+            report(status, lastReport, false, "Comparing " + full.length + " files in full, "
+                    + FileEnhanced.formatSize(bytesRead.sum()) + " read...");
+        }));
+
+        int[] hashed = Arrays.stream(candidates).filter(file -> digests[file] != null && !failed[file]).toArray();
+        FileResultStore.sortRows(hashed, 0, hashed.length, (a, b) -> {
+            int order = Long.compare(sizes[a], sizes[b]);
+            return order != 0 ? order : Arrays.compare(digests[a], digests[b]);
+        });
+        List<Group> groups = new ArrayList<>();
+        for (int start = 0, end; start < hashed.length; start = end) {
+            end = start + 1;
+            while (end < hashed.length && sizes[hashed[end]] == sizes[hashed[start]]
+                    && Arrays.equals(digests[hashed[end]], digests[hashed[start]])) {
+                end++;
+            }
+            if (end - start > 1) {
+                List<Path> copies = new ArrayList<>(end - start);
+                for (int i = start; i < end; i++) {
+                    copies.add(files[hashed[i]]);
+                }
+                groups.add(new Group(sizes[hashed[start]], copies));
+            }
+        }
+        groups.sort(Comparator.comparingLong(Group::getWastedBytes).reversed());
+        return new Result(groups, !cancelled.getAsBoolean());
+    }
+
+    /**
+     * Stops the most recently started run. Files that are being read finish first.
+     */
+    public void cancel() {
+        currentRun.set(true);
+    }
+
+    /**
+     * Gets the number of bytes the last run read.
+     */
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    /**
+     * Picks the files, among candidates sorted by size and partial hash, that were only hashed at
+     * their ends and still share both with another file, so they need a full hash.
+     */
+    private static int[] partialCollisions(int[] sorted, long[] sizes, long[] partialHashes, byte[][] digests,
+                                           boolean[] failed) {
+        int[] result = new int[sorted.length];
+        int count = 0;
+        for (int start = 0, end; start < sorted.length; start = end) {
+            end = start + 1;
+            while (end < sorted.length && sizes[sorted[end]] == sizes[sorted[start]]
+                    && partialHashes[sorted[end]] == partialHashes[sorted[start]]) {
+                end++;
+            }
+            int first = count;
+            for (int i = start; i < end; i++) {
+                if (!failed[sorted[i]] && digests[sorted[i]] == null) {
+                    result[count++] = sorted[i];
+                }
+            }
+            if (count - first < 2) {
+                count = first;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Hashes a whole file, or only its first and last block. Marks the file failed and returns
+     * null if it cannot be read.
+     */
+    private byte[] hash(Path file, long size, boolean ends, boolean[] failed, int index) {
+        MessageDigest digest = DIGESTS.get();
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        digest.reset();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ends) {
+                read(channel, buffer, 0, BLOCK_SIZE, digest);
+                read(channel, buffer, size - BLOCK_SIZE, BLOCK_SIZE, digest);
+            } else {
+                read(channel, buffer, 0, size, digest);
+            }
+            return digest.digest();
+        } catch (IOException e) {
+            failed[index] = true;
+            return null;
+        } finally {
+            buffers.add(buffer);
+        }
+    }
+
+    private void read(FileChannel channel, ByteBuffer buffer, long position, long length, MessageDigest digest) throws IOException {
+        long end = position + length;
+        while (position < end) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+            int count = channel.read(buffer, position);
+            if (count < 0) {
+                throw new IOException("File changed while it was read");
+            }
+            buffer.flip();
+            digest.update(buffer);
+            position += count;
+            bytesRead.add(count);
+        }
+    }
+
+    private static void report(Consumer<String> status, AtomicLong lastReport, boolean force, String message) {
+        if (status == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        long last = lastReport.get();
+        if (force || (now - last >= REPORT_INTERVAL_NANOS && lastReport.compareAndSet(last, now))) {
+            status.accept(message);
+        }
+    }
+
+    /**
+     * Hashes a range of files, splitting it so idle workers can steal half of it.
+     */
+    private static class RangeTask extends RecursiveAction {
+        private final int[] files;
+        private final int from;
+        private final int to;
+        private final BooleanSupplier cancelled;
+        private final IntConsumer action;
+
+        RangeTask(int[] files, int from, int to, BooleanSupplier cancelled, IntConsumer action) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+            this.cancelled = cancelled;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RangeTask(files, from, middle, cancelled, action),
+                        new RangeTask(files, middle, to, cancelled, action));
+                return;
+            }
+            if (to > from && !cancelled.getAsBoolean()) {
+                action.accept(files[from]);
+            }
+        }
+    }
+
+    /**
+     * The groups a run found.
+     */
+    public static class Result {
+        private final List<Group> groups;
+        private final boolean complete;
+
+        Result(List<Group> groups, boolean complete) {
+            this.groups = groups;
+            this.complete = complete;
+        }
+
+        /**
+         * Gets the groups, the ones wasting the most space first. Every group is a true set of
+         * duplicates, but an incomplete run may have missed copies and whole groups.
+         */
+        public List<Group> getGroups() {
+            return groups;
+        }
+
+        /**
+         * Tells whether every candidate file was compared, that is the run was not cancelled.
+         */
+        public boolean isComplete() {
+            return complete;
+        }
+    }
+
+    /**
+     * Files with identical content.
+     */
+    public static class Group {
+        private final long size;
+        private final List<Path> files;
+
+        Group(long size, List<Path> files) {
+            this.size = size;
+            this.files = files;
+        }
+
+        /**
+         * Gets the size of each copy.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        public List<Path> getFiles() {
+            return files;
+        }
+
+        /**
+         * Gets the space all copies but one take up.
+         */
+        public long getWastedBytes() {
+            return size * (files.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package org.example.fileexplorerjavafx;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Maps file names to their {@link FileType} by extension, without allocating. Extensions of up to
+ * eight ASCII characters are packed into a {@code long}, read backwards from the end of the name
+ * and lower-cased on the way, and looked up in an open-addressing table built once at startup.
+ * A name with a longer or non-ASCII extension belongs to no category.
+ * <p>
+ * The categories are defined in the bundled {@value #CONFIG_FILE_NAME} resource. A file of the
+ * same name in the user's configuration directory, see {@link FileIndex#getConfigDirectory()},
+ * replaces the extension list of every category it mentions, so bundled extensions can be removed
+ * as well as added. If two categories list the same extension, the user's definition wins, then
+ * the category declared first in {@link FileType}.
+ */
+public class FileClassifier {
+
+    public static final String CONFIG_FILE_NAME = "categories.properties";
+
+    private static final FileType[] FILE_TYPES = FileType.values();
+    private static final int MAX_EXTENSION_LENGTH = 8;
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private static FileClassifier defaultClassifier;
+
+    private final long[] keys;
+    private final byte[] types;
+    private final int shift;
+    private final long fingerprint;
+
+    /**
+     * Compiles a classifier from extension lists, highest precedence first. A category takes its
+     * list from the first definition that mentions it; later lists of the same category are ignored.
+     */
+    public FileClassifier(List<Map<FileType, List<String>>> definitions) {
+        Map<Long, FileType> extensions = new LinkedHashMap<>();
+        Set<FileType> defined = EnumSet.noneOf(FileType.class);
+        for (Map<FileType, List<String>> definition : definitions) {
+            Set<FileType> definedBefore = EnumSet.copyOf(defined);
+            for (Map.Entry<FileType, List<String>> category : definition.entrySet()) {
+                if (definedBefore.contains(category.getKey())) {
+                    continue;
+                }
+                defined.add(category.getKey());
+                for (String extension : category.getValue()) {
+                    long key = pack(extension);
+                    if (key == 0) {
+                        Log.warn("Ignoring extension \"" + extension + "\" of " + category.getKey()
+                                + ": extensions must be 1 to " + MAX_EXTENSION_LENGTH + " ASCII characters.");
+                    } else {
+                        extensions.putIfAbsent(key, category.getKey());
+                    }
+                }
+            }
+        }
+
+        int bits = 4;
+        while ((1 << bits) < extensions.size() * 4) {
+            bits++;
+        }
+        keys = new long[1 << bits];
+        types = new byte[1 << bits];
+        shift = 64 - bits;
+
+        long hash = 17;
+        for (Map.Entry<Long, FileType> extension : extensions.entrySet()) {
+            long key = extension.getKey();
+            int slot = slot(key);
+            while (keys[slot] != 0) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            keys[slot] = key;
+            types[slot] = (byte) extension.getValue().ordinal();
+            hash = hash * 31 + key * 7 + extension.getValue().ordinal();
+        }
+        fingerprint = hash;
+    }
+
+    /**
+     * Gets the classifier compiled from the bundled categories and the user's overrides, loading
+     * it on first use.
+     */
+    public static synchronized FileClassifier getDefault() {
+        if (defaultClassifier == null) {
+            List<Map<FileType, List<String>>> definitions = new ArrayList<>();
+            Path userConfig = FileIndex.getConfigDirectory().resolve(CONFIG_FILE_NAME);
+            if (Files.isRegularFile(userConfig)) {
+                try (Reader reader = Files.newBufferedReader(userConfig, StandardCharsets.UTF_8)) {
+                    definitions.add(parse(reader));
+                } catch (IOException | IllegalArgumentException e) {
+                    Log.warn("Ignoring unreadable categories file " + userConfig + ": " + e.getMessage());
+                }
+            }
+            try (InputStream in = FileClassifier.class.getResourceAsStream(CONFIG_FILE_NAME)) {
+                if (in == null) {
+                    throw new IOException("Missing resource " + CONFIG_FILE_NAME);
+                }
+                definitions.add(parse(new InputStreamReader(in, StandardCharsets.UTF_8)));
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot load the default categories", e);
+            }
+            defaultClassifier = new FileClassifier(definitions);
+        }
+        return defaultClassifier;
+    }
+
+    /**
+     * Reads category definitions: one line per category, its name followed by {@code =} and its
+     * extensions separated by commas or spaces.
+     */
+    public static Map<FileType, List<String>> parse(Reader reader) throws IOException {
+        Properties properties = new Properties();
+        properties.load(reader);
+        Map<FileType, List<String>> definition = new EnumMap<>(FileType.class);
+        for (String name : properties.stringPropertyNames()) {
+            List<String> extensions = new ArrayList<>();
+            for (String extension : properties.getProperty(name).split("[,\\s]+")) {
+                if (extension.startsWith(".")) {
+                    extension = extension.substring(1);
+                }
+                if (!extension.isEmpty()) {
+                    extensions.add(extension);
+                }
+            }
+            definition.put(FileType.fromString(name.trim()), extensions);
+        }
+        return definition;
+    }
+
+    /**
+     * Returns the category a file name belongs to based on its extension, or null if it belongs to none.
+     */
+    public FileType classify(CharSequence fileName) {
+        long key = 0;
+        int bits = 0;
+        for (int i = fileName.length() - 1; i >= 0; i--) {
+            char c = fileName.charAt(i);
+            if (c == '.') {
+                return key == 0 ? null : lookup(key);
+            }
+            if (bits == MAX_EXTENSION_LENGTH * 8 || c >= 128) {
+                return null;
+            }
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            key |= (long) c << bits;
+            bits += 8;
+        }
+        return null;
+    }
+
+    /**
+     * Gets a value that changes whenever the category definitions change, so results classified
+     * with other definitions can be recognized.
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    private FileType lookup(long key) {
+        int mask = keys.length - 1;
+        for (int slot = slot(key); keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return FILE_TYPES[types[slot]];
+            }
+        }
+        return null;
+    }
+
+    private int slot(long key) {
+        return (int) ((key * HASH_MULTIPLIER) >>> shift);
+    }
+
+    /**
+     * Packs an extension the way {@link #classify} reads it, or returns 0 if it cannot be packed.
+     */
+    private static long pack(String extension) {
+        if (extension.isEmpty() || extension.length() > MAX_EXTENSION_LENGTH) {
+            return 0;
+        }
+        long key = 0;
+        int bits = 0;
+        for (int i = extension.length() - 1; i >= 0; i--) {
+            char c = extension.charAt(i);
+            if (c >= 128 || c == '.') {
+                return 0;
+            }
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            key |= (long) c << bits;
+            bits += 8;
+        }
+        return key;
+    }
+}
@@ -2,68 +2,111 @@ package org.example.fileexplorerjavafx;
 
 import java.io.File;
 
-public class FileEnhanced {
-    private FileType fileType;
-    private File file;
+/**
+ * Immutable scan result for one categorized file. The parent directory path is shared by all
+ * files of the same directory, the path hash is computed once and the formatted size is built on
+ * first use, so large result sets stay small and hash lookups allocate nothing.
+ */
+public final class FileEnhanced {
+    private static final FileType[] FILE_TYPES = FileType.values();
 
-    public FileEnhanced() {
-    }
+    private final String parentPath;
+    private final String fileName;
+    private final long size;
+    private final long lastModified;
+    private final byte fileType;
+    private final int hash;
+    private String formattedSize;
 
     public FileEnhanced(File file, FileType fileType) {
-        this.file = file;
-        this.fileType = fileType;
+        this(file, fileType, -1, -1);
+    }
+
+    /**
+     * Creates a file entry whose size and modification time were already read during the scan.
+     */
+    public FileEnhanced(File file, FileType fileType, long size, long lastModified) {
+        this(file.getParent(), file.getName(), fileType, size, lastModified);
+    }
+
+    /**
+     * Creates a file entry from its parent directory path and name. Callers creating many entries
+     * for one directory should pass the same parent path instance to all of them.
+     */
+    public FileEnhanced(String parentPath, String fileName, FileType fileType, long size, long lastModified) {
+        this.parentPath = parentPath;
+        this.fileName = fileName;
+        this.fileType = fileType != null ? (byte) fileType.ordinal() : -1;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.hash = pathHash(parentPath, fileName);
+    }
+
+    /**
+     * Computes the hash of a file path given as parent directory path and name, as used by {@link #hashCode()}.
+     */
+    static int pathHash(String parentPath, String fileName) {
+        return 31 * (parentPath != null ? parentPath.hashCode() : 0) + fileName.hashCode();
     }
 
     /**
      * Gets the file type (Documents, Images, etc.)
      */
     public FileType getFileType() {
-        return fileType;
+        return fileType >= 0 ? FILE_TYPES[fileType] : null;
     }
 
     /**
-     * Sets the file type (Documents, Images, etc.)
+     * Creates a file object for this entry. Allocates on every call, so keep it off hot paths.
      */
-    public void setFileType(FileType fileType) {
-        this.fileType = fileType;
+    public File getFile() {
+        return new File(parentPath, fileName);
     }
 
     /**
-     * Gets the actual file object.
+     * Gets the path of the directory containing the file.
      */
-    public File getFile() {
-        return file;
+    public String getParentPath() {
+        return parentPath;
+    }
+
+    /**
+     * Gets the size in bytes recorded during the scan, or -1 if it was not recorded.
+     */
+    public long getSize() {
+        return size;
     }
 
     /**
-     * Sets the actual file object.
+     * Gets the modification time in milliseconds recorded during the scan, or -1 if it was not recorded.
      */
-    public void setFile(File file) {
-        this.file = file;
+    public long getLastModified() {
+        return lastModified;
     }
 
     /**
      * Returns the file's name for display in the UI.
      */
     public String getFileName() {
-        return file != null ? file.getName() : "";
+        return fileName;
     }
 
     /**
-     * Returns the file's size in a human-readable format.
+     * Returns the size recorded during the scan in a human-readable format. Does not touch the file system.
      */
     public String getFileSize() {
-        if (file != null && file.isFile()) {
-            long sizeInBytes = file.length();
-            return formatSize(sizeInBytes);
+        String formatted = formattedSize;
+        if (formatted == null) {
+            formatted = size >= 0 ? formatSize(size) : "Unknown";
+            formattedSize = formatted;
         }
-        return "Unknown";
+        return formatted;
     }
 
     /**
      * Formats the file size in bytes to a more readable format (KB, MB, GB).
      */
-    private String formatSize(long sizeInBytes) {
+    public static String formatSize(long sizeInBytes) {
         if (sizeInBytes >= 1024 * 1024 * 1024) {
             return String.format("%.2f GB", sizeInBytes / (1024.0 * 1024 * 1024));
         } else if (sizeInBytes >= 1024 * 1024) {
@@ -81,18 +124,20 @@ public class FileEnhanced {
     }
 
     /**
-     * Equality is based on the file's absolute path.
+     * Equality is based on the file's path.
      */
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
         if (!(obj instanceof FileEnhanced)) return false;
         FileEnhanced other = (FileEnhanced) obj;
-        return file.getAbsolutePath().equals(other.file.getAbsolutePath());
+        return hash == other.hash
+                && fileName.equals(other.fileName)
+                && (parentPath == null ? other.parentPath == null : parentPath.equals(other.parentPath));
     }
 
     @Override
     public int hashCode() {
-        return file.getAbsolutePath().hashCode();
+        return hash;
     }
 }
@@ -1,5 +1,8 @@
 package org.example.fileexplorerjavafx;
 
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import javafx.concurrent.Worker;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -9,22 +12,27 @@ import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.MouseEvent;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.Stage;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Stream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FileExplorerController {
 
     @FXML
-    private TreeView<String> fileTreeView;
+    private TreeView<Path> fileTreeView;
 
     @FXML
     private TableView<FileItem> fileTableView;
@@ -47,8 +55,36 @@ public class FileExplorerController {
     @FXML
     private ImageView refreshIcon;
 
+    @FXML
+    private CheckMenuItem chkFoldersOnly;
+
+    @FXML
+    private ProgressBar operationProgress;
+
+    @FXML
+    private Button btnCancelOperation;
+
     private Path currentDirectory;
 
+    private final DirectoryListingCache listingCache = new DirectoryListingCache();
+    private final ContentSearcher searcher = new ContentSearcher(FILE_OPERATION_WORKERS);
+    private Task<Integer> listingTask;
+    private Task<?> operationTask;
+    private Task<Integer> searchTask;
+    private int searchGeneration;
+
+    private static final int MAX_TREE_CHILDREN = 5000;
+    private static final String TRUNCATED_LABEL = "(more entries not shown)";
+    private static final int LISTING_CHUNK_SIZE = 256;
+    private static final long LISTING_FLUSH_MILLIS = 100;
+    private static final int FILE_OPERATION_WORKERS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private static final ExecutorService LISTING_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "directory-listing");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private static final List<String> TEXT_FILE_EXTENSIONS = Arrays.asList("txt", "md", "java", "xml", "json", "html");
 
     @FXML
@@ -61,8 +97,29 @@ public class FileExplorerController {
         lastModifiedColumn.setCellValueFactory(new PropertyValueFactory<>("lastModified"));
 
         Path rootPath = FileSystems.getDefault().getPath(System.getProperty("user.home"));
-        TreeItem<String> rootItem = new TreeItem<>(rootPath.toString());
+        TreeItem<Path> rootItem = new TreeItem<>(rootPath);
+        rootItem.setExpanded(true);
+        rootItem.addEventHandler(TreeItem.<Path>branchExpandedEvent(), event -> {
+            TreeItem<Path> item = event.getTreeItem();
+            if (item.getChildren().size() == 1 && isPlaceholder(item.getChildren().get(0))) {
+                loadDirectory(item.getValue(), item);
+            }
+        });
         fileTreeView.setRoot(rootItem);
+        fileTreeView.setCellFactory(view -> new TreeCell<>() {
+            @Override
+            protected void updateItem(Path path, boolean empty) {
+                super.updateItem(path, empty);
+                if (empty) {
+                    setText(null);
+                    setGraphic(null);
+                } else {
+                    setText(path == null ? null : getTreeItem().getParent() == null || path.getFileName() == null
+                            ? path.toString() : path.getFileName().toString());
+                    setGraphic(getTreeItem().getGraphic());
+                }
+            }
+        });
 
         loadDirectory(rootPath, rootItem);
 
@@ -88,21 +145,22 @@ public class FileExplorerController {
         });
 
         fileTableView.getColumns().add(0, iconColumn);
+        setOperationControlsVisible(false);
     }
 
     @FXML
     private void refreshView() {
-        TreeItem<String> selectedItem = fileTreeView.getSelectionModel().getSelectedItem();
+        TreeItem<Path> selectedItem = fileTreeView.getSelectionModel().getSelectedItem();
 
-        if (selectedItem != null) {
-            Path selectedPath = Paths.get(buildFullPath(selectedItem));
+        if (selectedItem != null && selectedItem.getValue() != null) {
+            Path selectedPath = selectedItem.getValue();
 
             Path parentPath = selectedPath.getParent();
 
             if (parentPath != null && Files.isDirectory(parentPath)) {
                 loadFilesInTable(parentPath);
 
-                TreeItem<String> parentItem = selectedItem.getParent();
+                TreeItem<Path> parentItem = selectedItem.getParent();
                 if (parentItem != null) {
                     parentItem.getChildren().clear();
                     loadDirectory(parentPath, parentItem);
@@ -116,34 +174,71 @@ public class FileExplorerController {
         }
     }
 
-    private void loadDirectory(Path path, TreeItem<String> parentItem) {
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
-            for (Path entry : stream) {
-                TreeItem<String> treeItem = new TreeItem<>(entry.getFileName().toString());
-                parentItem.getChildren().add(treeItem);
-
-                if (Files.isDirectory(entry)) {
-                    treeItem.getChildren().add(new TreeItem<>(""));
-                    treeItem.setExpanded(false);
-                    treeItem.addEventHandler(TreeItem.branchExpandedEvent(), event -> {
-                        if (treeItem.getChildren().size() == 1 && treeItem.getChildren().get(0).getValue().equals("")) {
-                            treeItem.getChildren().remove(0);
-                            loadDirectory(entry, treeItem);
-                        }
-                    });
+    /**
+     * Lists a directory into a tree item on a background thread, through the listing cache shared
+     * with the table. Subdirectories get a placeholder child and are listed themselves when first
+     * expanded. At most {@value #MAX_TREE_CHILDREN} entries are shown per folder, so expanding a
+     * huge folder stays cheap; the table still lists all of them.
+     */
+    private void loadDirectory(Path path, TreeItem<Path> parentItem) {
+        boolean foldersOnly = chkFoldersOnly.isSelected();
+
+        Task<List<TreeItem<Path>>> task = new Task<>() {
+            @Override
+            protected List<TreeItem<Path>> call() throws IOException {
+                List<TreeItem<Path>> children = new ArrayList<>();
+                for (DirectoryListingCache.Entry entry : listingCache.list(path)) {
+                    if (isCancelled()) {
+                        break;
+                    }
+                    if (children.size() == MAX_TREE_CHILDREN) {
+                        children.add(new TreeItem<>(null, new Label(TRUNCATED_LABEL)));
+                        break;
+                    }
+                    if (foldersOnly && !entry.isDirectory()) {
+                        continue;
+                    }
+
+                    TreeItem<Path> treeItem = new TreeItem<>(entry.getPath());
+                    if (entry.isDirectory()) {
+                        treeItem.getChildren().add(new TreeItem<>());
+                    }
+                    children.add(treeItem);
                 }
+                return children;
             }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        };
+
+        task.setOnSucceeded(event -> parentItem.getChildren().setAll(task.getValue()));
+        task.setOnFailed(event -> {
+            task.getException().printStackTrace();
+            parentItem.getChildren().clear();
+        });
+
+        LISTING_EXECUTOR.execute(task);
     }
 
+    /**
+     * Tells whether a tree item stands in for the not yet listed children of a folder.
+     */
+    private static boolean isPlaceholder(TreeItem<Path> item) {
+        return item.getValue() == null && item.getGraphic() == null;
+    }
 
+    /**
+     * Reloads the tree after switching between showing all entries and folders only.
+     */
+    @FXML
+    private void toggleFoldersOnly() {
+        TreeItem<Path> rootItem = fileTreeView.getRoot();
+        rootItem.getChildren().clear();
+        loadDirectory(rootItem.getValue(), rootItem);
+    }
 
     private void handleDirectorySelection(MouseEvent event) {
-        TreeItem<String> selectedItem = fileTreeView.getSelectionModel().getSelectedItem();
-        if (selectedItem != null) {
-            Path selectedPath = Paths.get(buildFullPath(selectedItem));
+        TreeItem<Path> selectedItem = fileTreeView.getSelectionModel().getSelectedItem();
+        if (selectedItem != null && selectedItem.getValue() != null) {
+            Path selectedPath = selectedItem.getValue();
 
             if (Files.isDirectory(selectedPath)) {
                 loadFilesInTable(selectedPath);
@@ -161,41 +256,81 @@ public class FileExplorerController {
         }
     }
 
-    private String buildFullPath(TreeItem<String> item) {
-        StringBuilder path = new StringBuilder(item.getValue());
-        TreeItem<String> parent = item.getParent();
-        while (parent != null) {
-            path.insert(0, parent.getValue() + File.separator);
-            parent = parent.getParent();
-        }
-        return path.toString();
-    }
-
+    /**
+     * Lists a directory into the table on a background thread, from the listing cache when the
+     * directory is unchanged. Rows are streamed in chunks of up to
+     * {@value #LISTING_CHUNK_SIZE} entries, or whatever was read within {@value #LISTING_FLUSH_MILLIS} ms,
+     * so the table fires one change per chunk. Starting another listing cancels this one and any
+     * content search still filling the table.
+     */
     private void loadFilesInTable(Path path) {
+        if (listingTask != null) {
+            listingTask.cancel();
+        }
+        cancelContentSearch();
         fileTableView.getItems().clear();
+        statusLabel.setText("Loading " + path + "...");
 
-        try (Stream<Path> paths = Files.list(path)) {
-            paths.forEach(filePath -> {
-                try {
-                    File file = filePath.toFile();
-                    BasicFileAttributes attrs = Files.readAttributes(filePath, BasicFileAttributes.class);
+        Task<Integer> task = new Task<>() {
+            @Override
+            protected Integer call() throws IOException {
+                listingCache.list(path, entry -> {
+                    if (isCancelled()) {
+                        return false;
+                    }
                     FileItem fileItem = new FileItem(
-                            filePath.getFileName().toString(),
-                            attrs.size(),
-                            Files.isDirectory(filePath) ? "Directory" : "File",
-                            attrs.lastModifiedTime().toMillis(),
-                            IconUtil.getFileIcon(file)
+                            entry.getName(),
+                            entry.getSize(),
+                            entry.isDirectory() ? "Directory" : "File",
+                            entry.getLastModified(),
+                            null
                     );
-                    fileTableView.getItems().add(fileItem);
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            });
-            statusLabel.setText("Loaded " + fileTableView.getItems().size() + " items.");
-        } catch (IOException e) {
-            e.printStackTrace();
-            statusLabel.setText("Unable to load directory: " + path.toString());
-        }
+                    IconUtil.loadFileIcon(entry.getPath().toFile(), entry.isDirectory(), fileItem::setIcon);
+                    chunk.add(fileItem);
+                    count++;
+
+                    long now = System.currentTimeMillis();
+                    if (chunk.size() >= LISTING_CHUNK_SIZE || now - lastFlush >= LISTING_FLUSH_MILLIS) {
+                        publish();
+                        lastFlush = now;
+                    }
+                    return true;
+                });
+                publish();
+                return count;
+            }
+
+            private int count;
+            private List<FileItem> chunk = new ArrayList<>();
+            private long lastFlush = System.currentTimeMillis();
+
+            private void publish() {
+                List<FileItem> items = chunk;
+                int total = count;
+                chunk = new ArrayList<>();
+                Platform.runLater(() -> {
+                    if (listingTask == this && !isCancelled()) {
+                        fileTableView.getItems().addAll(items);
+                        statusLabel.setText("Loading " + path + "... " + total + " items");
+                    }
+                });
+            }
+        };
+
+        task.setOnSucceeded(event -> {
+            if (listingTask == task) {
+                statusLabel.setText("Loaded " + task.getValue() + " items.");
+            }
+        });
+        task.setOnFailed(event -> {
+            if (listingTask == task) {
+                task.getException().printStackTrace();
+                statusLabel.setText("Unable to load directory: " + path.toString());
+            }
+        });
+
+        listingTask = task;
+        LISTING_EXECUTOR.execute(task);
     }
 
     private void openTextFileEditor(Path filePath) {
@@ -252,9 +387,9 @@ public class FileExplorerController {
 
     @FXML
     private void createNewTextFile() {
-        TreeItem<String> selectedItem = fileTreeView.getSelectionModel().getSelectedItem();
-        if (selectedItem != null) {
-            Path selectedPath = Paths.get(buildFullPath(selectedItem));
+        TreeItem<Path> selectedItem = fileTreeView.getSelectionModel().getSelectedItem();
+        if (selectedItem != null && selectedItem.getValue() != null) {
+            Path selectedPath = selectedItem.getValue();
 
             if (Files.isDirectory(selectedPath)) {
                 TextInputDialog dialog = new TextInputDialog("newFile.txt");
@@ -269,6 +404,7 @@ public class FileExplorerController {
 
                     try {
                         Files.createFile(newFilePath);
+                        listingCache.invalidate(selectedPath);
                         showInfo("Success", "File created successfully: " + newFilePath);
                         refreshView();
                     } catch (IOException e) {
@@ -284,9 +420,9 @@ public class FileExplorerController {
 
     @FXML
     private void createNewFolder() {
-        TreeItem<String> selectedItem = fileTreeView.getSelectionModel().getSelectedItem();
-        if (selectedItem != null) {
-            Path selectedPath = Paths.get(buildFullPath(selectedItem));
+        TreeItem<Path> selectedItem = fileTreeView.getSelectionModel().getSelectedItem();
+        if (selectedItem != null && selectedItem.getValue() != null) {
+            Path selectedPath = selectedItem.getValue();
 
             if (Files.isDirectory(selectedPath)) {
                 TextInputDialog dialog = new TextInputDialog("NewFolder");
@@ -301,6 +437,7 @@ public class FileExplorerController {
 
                     try {
                         Files.createDirectory(newFolderPath);
+                        listingCache.invalidate(selectedPath);
                         showInfo("Success", "Folder created successfully: " + newFolderPath);
                     } catch (IOException e) {
                         e.printStackTrace();
@@ -315,9 +452,9 @@ public class FileExplorerController {
 
     @FXML
     private void deleteItem() {
-        TreeItem<String> selectedItem = fileTreeView.getSelectionModel().getSelectedItem();
-        if (selectedItem != null) {
-            Path selectedPath = Paths.get(buildFullPath(selectedItem));
+        TreeItem<Path> selectedItem = fileTreeView.getSelectionModel().getSelectedItem();
+        if (selectedItem != null && selectedItem.getValue() != null) {
+            Path selectedPath = selectedItem.getValue();
 
             Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
             alert.setTitle("Delete Item");
@@ -326,19 +463,225 @@ public class FileExplorerController {
 
             Optional<ButtonType> result = alert.showAndWait();
             if (result.isPresent() && result.get() == ButtonType.OK) {
-                try {
-                    Files.walk(selectedPath)
-                            .sorted(Comparator.reverseOrder())
-                            .map(Path::toFile)
-                            .forEach(File::delete);
-
-                    showInfo("Success", "Item deleted successfully: " + selectedPath);
+                DeleteTask task = new DeleteTask(selectedPath, FILE_OPERATION_WORKERS);
+                startOperation(task, "Could not delete the item.", () -> {
+                    listingCache.invalidate(selectedPath);
+                    if (selectedPath.getParent() != null) {
+                        listingCache.invalidate(selectedPath.getParent());
+                    }
                     refreshView();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                    showError("Error", "Could not delete the item.");
+
+                    if (task.getState() == Worker.State.SUCCEEDED) {
+                        List<Path> failures = task.getValue();
+                        if (failures.isEmpty()) {
+                            showInfo("Success", "Item deleted successfully: " + selectedPath);
+                        } else {
+                            showError("Error", "Could not delete " + failures.size() + " items, including: " + failures.get(0));
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    @FXML
+    private void copyItem() {
+        transferItem(false);
+    }
+
+    @FXML
+    private void moveItem() {
+        transferItem(true);
+    }
+
+    /**
+     * Copies or moves the selected file or folder into a directory the user picks.
+     */
+    private void transferItem(boolean move) {
+        TreeItem<Path> selectedItem = fileTreeView.getSelectionModel().getSelectedItem();
+        if (selectedItem != null && selectedItem.getValue() != null) {
+            Path selectedPath = selectedItem.getValue();
+
+            DirectoryChooser chooser = new DirectoryChooser();
+            chooser.setTitle((move ? "Move " : "Copy ") + selectedPath.getFileName() + " To");
+            if (selectedPath.getParent() != null && Files.isDirectory(selectedPath.getParent())) {
+                chooser.setInitialDirectory(selectedPath.getParent().toFile());
+            }
+            File targetDirectory = chooser.showDialog(fileTreeView.getScene().getWindow());
+            if (targetDirectory == null) {
+                return;
+            }
+
+            TransferTask task = new TransferTask(selectedPath, targetDirectory.toPath(), move, FILE_OPERATION_WORKERS);
+            startOperation(task, "Could not " + (move ? "move" : "copy") + " the item.", () -> {
+                listingCache.invalidate(targetDirectory.toPath());
+                if (move && selectedPath.getParent() != null) {
+                    listingCache.invalidate(selectedPath.getParent());
                 }
+                refreshView();
+
+                if (task.getState() == Worker.State.SUCCEEDED && !task.getValue().isEmpty()) {
+                    List<Path> failures = task.getValue();
+                    showError("Error", "Could not " + (move ? "move " : "copy ") + failures.size() + " items, including: " + failures.get(0));
+                }
+            });
+        }
+    }
+
+    /**
+     * Searches the contents of every file under the selected folder. Matching files stream into the
+     * table as they are found, until the table is given another folder or search.
+     */
+    @FXML
+    private void searchContents() {
+        TreeItem<Path> selectedItem = fileTreeView.getSelectionModel().getSelectedItem();
+        if (selectedItem == null || selectedItem.getValue() == null || !Files.isDirectory(selectedItem.getValue())) {
+            showError("Invalid Selection", "Please select a directory to search.");
+            return;
+        }
+        Path selectedPath = selectedItem.getValue();
+
+        TextInputDialog dialog = new TextInputDialog();
+        dialog.setTitle("Search Contents");
+        dialog.setHeaderText("Find files under " + selectedPath + " containing all of these words");
+        dialog.setContentText("Search for:");
+        Optional<String> result = dialog.showAndWait();
+        if (result.isEmpty() || result.get().isBlank()) {
+            return;
+        }
+        String query = result.get();
+
+        // A running search is replaced by the new one; any other operation keeps the table as it is.
+        if (isOperationInProgress(searchTask)) {
+            return;
+        }
+        if (listingTask != null) {
+            listingTask.cancel();
+            listingTask = null;
+        }
+        cancelContentSearch();
+        fileTableView.getItems().clear();
+
+        int generation = searchGeneration;
+        ConcurrentLinkedQueue<FileItem> found = new ConcurrentLinkedQueue<>();
+        AtomicBoolean drainScheduled = new AtomicBoolean();
+        Runnable drain = () -> {
+            drainScheduled.set(false);
+            List<FileItem> batch = new ArrayList<>();
+            for (FileItem item; (item = found.poll()) != null; ) {
+                batch.add(item);
             }
+            if (generation == searchGeneration) {
+                fileTableView.getItems().addAll(batch);
+            }
+        };
+
+        Task<Integer> task = new Task<>() {
+            @Override
+            protected Integer call() {
+                updateProgress(-1, 1);
+                updateMessage("Searching " + selectedPath + " for \"" + query + "\"...");
+                AtomicInteger matches = new AtomicInteger();
+                searcher.searchTree(selectedPath, query, (file, size, lastModified) -> {
+                    FileItem fileItem = new FileItem(selectedPath.relativize(file).toString(), size, "File", lastModified, null);
+                    IconUtil.loadFileIcon(file.toFile(), false, fileItem::setIcon);
+                    found.add(fileItem);
+                    if (drainScheduled.compareAndSet(false, true)) {
+                        Platform.runLater(drain);
+                    }
+                    updateMessage("Searching " + selectedPath + "... " + matches.incrementAndGet() + " matches");
+                });
+                updateMessage(matches.get() + " files match \"" + query + "\" (" + searcher.getSearchedFiles()
+                        + " searched, " + searcher.getSkippedFiles() + " skipped as binary, too large or unreadable).");
+                return matches.get();
+            }
+
+            @Override
+            protected void cancelled() {
+                searcher.cancel();
+            }
+        };
+        searchTask = task;
+        startOperation(task, "Could not search the folder.", drain);
+    }
+
+    /**
+     * Stops the running content search and drops the matches it has not shown yet, so they do
+     * not end up in a table that now shows something else.
+     */
+    private void cancelContentSearch() {
+        searchGeneration++;
+        if (searchTask != null) {
+            searchTask.cancel();
+            searchTask = null;
+        }
+    }
+
+    /**
+     * Tells the user and returns true if an operation other than the given one is still running.
+     */
+    private boolean isOperationInProgress(Task<?> replaceable) {
+        if (operationTask != null && operationTask.isRunning() && operationTask != replaceable) {
+            showError("Operation in Progress", "Please wait for the current operation to finish or cancel it.");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Runs a long file operation in the background. Its message and progress are shown in the
+     * status bar, next to a button that cancels it, until it ends. Only one operation runs at a time.
+     *
+     * @param failureMessage the error shown if the operation throws
+     * @param onFinished     called on the JavaFX thread once the operation succeeded, failed or was cancelled
+     */
+    private void startOperation(Task<?> task, String failureMessage, Runnable onFinished) {
+        if (isOperationInProgress(null)) {
+            return;
+        }
+        operationTask = task;
+        statusLabel.textProperty().bind(task.messageProperty());
+        operationProgress.progressProperty().bind(task.progressProperty());
+        setOperationControlsVisible(true);
+
+        task.setOnSucceeded(event -> {
+            endOperation(task.getMessage());
+            onFinished.run();
+        });
+        task.setOnFailed(event -> {
+            task.getException().printStackTrace();
+            endOperation(failureMessage);
+            onFinished.run();
+            showError("Error", failureMessage);
+        });
+        task.setOnCancelled(event -> {
+            endOperation("Cancelled: " + task.getMessage());
+            onFinished.run();
+        });
+
+        Thread thread = new Thread(task);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void endOperation(String status) {
+        statusLabel.textProperty().unbind();
+        operationProgress.progressProperty().unbind();
+        setOperationControlsVisible(false);
+        statusLabel.setText(status);
+    }
+
+    private void setOperationControlsVisible(boolean visible) {
+        operationProgress.setVisible(visible);
+        operationProgress.setManaged(visible);
+        btnCancelOperation.setVisible(visible);
+        btnCancelOperation.setManaged(visible);
+    }
+
+    @FXML
+    private void cancelOperation() {
+        if (operationTask != null) {
+            operationTask.cancel();
         }
     }
 
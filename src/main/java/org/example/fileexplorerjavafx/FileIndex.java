@@ -0,0 +1,239 @@
+package org.example.fileexplorerjavafx;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent per-drive index of the categorized files found by the last scan.
+ * Every scanned directory is stored with its modification time, its sub-directory names
+ * and its categorized files, so a rescan can reuse a directory whose modification time
+ * has not changed without listing it again.
+ */
+public class FileIndex {
+
+    private static final int MAGIC = 0x42455849; // "BEXI"
+    private static final int VERSION = 2;
+    private static final FileType[] FILE_TYPES = FileType.values();
+
+    private final Path indexFile;
+    private final long classifierFingerprint;
+    private final Map<String, DirectoryRecord> previous;
+    private final Map<String, DirectoryRecord> current = new ConcurrentHashMap<>();
+
+    private FileIndex(Path indexFile, long classifierFingerprint, Map<String, DirectoryRecord> previous) {
+        this.indexFile = indexFile;
+        this.classifierFingerprint = classifierFingerprint;
+        this.previous = previous;
+    }
+
+    /**
+     * Loads the index stored for the given drive root, or starts an empty one if there is none
+     * or it cannot be read. An index built with other categories, told apart by the fingerprint of
+     * the {@link FileClassifier}, is not used.
+     */
+    public static FileIndex load(File rootDir, long classifierFingerprint) {
+        Path indexFile = getIndexDirectory().resolve(
+                rootDir.getAbsolutePath().replaceAll("[^A-Za-z0-9]", "_") + ".idx");
+        Map<String, DirectoryRecord> records = Collections.emptyMap();
+
+        if (Files.isRegularFile(indexFile)) {
+            try {
+                records = read(indexFile, classifierFingerprint);
+            } catch (IOException e) {
+                Log.warn("Ignoring unreadable file index " + indexFile + ": " + e.getMessage());
+            }
+        }
+
+        return new FileIndex(indexFile, classifierFingerprint, records);
+    }
+
+    /**
+     * Gets the directory the indexes are stored in, below the user's configuration directory.
+     */
+    public static Path getIndexDirectory() {
+        return getConfigDirectory().resolve("index");
+    }
+
+    /**
+     * Gets the user's configuration directory of the application.
+     */
+    public static Path getConfigDirectory() {
+        String appData = System.getenv("APPDATA");
+        if (appData != null) {
+            return Paths.get(appData, "BattutaExplorer");
+        }
+        String xdgConfig = System.getenv("XDG_CONFIG_HOME");
+        if (xdgConfig != null) {
+            return Paths.get(xdgConfig, "battuta-explorer");
+        }
+        return Paths.get(System.getProperty("user.home"), ".config", "battuta-explorer");
+    }
+
+    /**
+     * Returns the stored record of a directory if its modification time is unchanged since it was indexed.
+     */
+    public DirectoryRecord lookup(String directoryPath, long lastModified) {
+        DirectoryRecord record = previous.get(directoryPath);
+        if (record != null && lastModified != 0 && record.lastModified == lastModified) {
+            return record;
+        }
+        return null;
+    }
+
+    /**
+     * Records the state of a directory seen by the running scan. Safe to call from several scan workers.
+     */
+    public void record(String directoryPath, DirectoryRecord record) {
+        current.put(directoryPath, record);
+    }
+
+    /**
+     * Gets the number of directories recorded by the running scan.
+     */
+    public int getRecordedDirectoryCount() {
+        return current.size();
+    }
+
+    /**
+     * Writes the directories recorded by the running scan, replacing the stored index atomically.
+     */
+    public void save() throws IOException {
+        Files.createDirectories(indexFile.getParent());
+        Path tempFile = Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(classifierFingerprint);
+            out.writeInt(current.size());
+            for (Map.Entry<String, DirectoryRecord> entry : current.entrySet()) {
+                DirectoryRecord record = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(record.lastModified);
+
+                out.writeInt(record.subdirectories.length);
+                for (String name : record.subdirectories) {
+                    out.writeUTF(name);
+                }
+
+                out.writeInt(record.fileNames.length);
+                for (int i = 0; i < record.fileNames.length; i++) {
+                    out.writeUTF(record.fileNames[i]);
+                    out.writeLong(record.sizes[i]);
+                    out.writeLong(record.lastModifiedTimes[i]);
+                    out.writeByte(record.fileTypes[i]);
+                }
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+
+        Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Map<String, DirectoryRecord> read(Path indexFile, long classifierFingerprint) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unsupported index format");
+            }
+            if (in.readLong() != classifierFingerprint) {
+                throw new IOException("Built with other file categories");
+            }
+
+            int directoryCount = in.readInt();
+            Map<String, DirectoryRecord> records = new HashMap<>(directoryCount * 4 / 3 + 1);
+
+            for (int d = 0; d < directoryCount; d++) {
+                String path = in.readUTF();
+                long lastModified = in.readLong();
+
+                String[] subdirectories = new String[in.readInt()];
+                for (int i = 0; i < subdirectories.length; i++) {
+                    subdirectories[i] = in.readUTF();
+                }
+
+                int fileCount = in.readInt();
+                String[] fileNames = new String[fileCount];
+                long[] sizes = new long[fileCount];
+                long[] lastModifiedTimes = new long[fileCount];
+                byte[] types = new byte[fileCount];
+                for (int i = 0; i < fileCount; i++) {
+                    fileNames[i] = in.readUTF();
+                    sizes[i] = in.readLong();
+                    lastModifiedTimes[i] = in.readLong();
+                    types[i] = in.readByte();
+                    if (types[i] < 0 || types[i] >= FILE_TYPES.length) {
+                        throw new IOException("Invalid file type in index: " + types[i]);
+                    }
+                }
+
+                records.put(path, new DirectoryRecord(lastModified, subdirectories, fileNames, sizes, lastModifiedTimes, types));
+            }
+
+            return records;
+        }
+    }
+
+    /**
+     * The indexed state of one directory: its sub-directories and its categorized files.
+     */
+    public static final class DirectoryRecord {
+        private final long lastModified;
+        private final String[] subdirectories;
+        private final String[] fileNames;
+        private final long[] sizes;
+        private final long[] lastModifiedTimes;
+        private final byte[] fileTypes;
+
+        public DirectoryRecord(long lastModified, String[] subdirectories, String[] fileNames, long[] sizes,
+                               long[] lastModifiedTimes, byte[] fileTypes) {
+            this.lastModified = lastModified;
+            this.subdirectories = subdirectories;
+            this.fileNames = fileNames;
+            this.sizes = sizes;
+            this.lastModifiedTimes = lastModifiedTimes;
+            this.fileTypes = fileTypes;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public String[] getSubdirectories() {
+            return subdirectories;
+        }
+
+        public int getFileCount() {
+            return fileNames.length;
+        }
+
+        public String getFileName(int i) {
+            return fileNames[i];
+        }
+
+        public long getSize(int i) {
+            return sizes[i];
+        }
+
+        public long getLastModified(int i) {
+            return lastModifiedTimes[i];
+        }
+
+        public FileType getFileType(int i) {
+            return FILE_TYPES[fileTypes[i]];
+        }
+    }
+}
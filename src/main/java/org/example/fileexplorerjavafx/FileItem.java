@@ -1,5 +1,7 @@
 package org.example.fileexplorerjavafx;
 
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
 import javafx.scene.image.Image;
 
 import java.text.DecimalFormat;
@@ -13,7 +15,7 @@ public class FileItem {
     private String size;
     private String type;
     private String lastModified;
-    private Image icon;
+    private final ObjectProperty<Image> icon = new SimpleObjectProperty<>(this, "icon");
 
     private static final DecimalFormat SIZE_FORMAT = new DecimalFormat("#,##0.#");
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
@@ -23,7 +25,7 @@ public class FileItem {
         this.size = formatSize(sizeInBytes);
         this.type = type;
         this.lastModified = formatLastModifiedTime(lastModifiedTime);
-        this.icon = icon;
+        this.icon.set(icon);
     }
 
     private String formatSize(long sizeInBytes) {
@@ -62,6 +64,17 @@ public class FileItem {
     }
 
     public Image getIcon() {
+        return icon.get();
+    }
+
+    /**
+     * Replaces the icon, for example once an asynchronously loaded icon arrives.
+     */
+    public void setIcon(Image icon) {
+        this.icon.set(icon);
+    }
+
+    public ObjectProperty<Image> iconProperty() {
         return icon;
     }
 }
@@ -0,0 +1,413 @@
+package org.example.fileexplorerjavafx;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Columnar store for scan results. Every file is a row spread over primitive columns: an index into
+ * an interned parent-directory table, a slice of a shared UTF-8 name buffer, its size, its modification
+ * time and its type code. Rows are looked up by path through an open-addressing hash table of row
+ * numbers, so a multi-million-entry scan costs a few dozen bytes per file instead of a graph of objects.
+ * <p>
+ * Rows are never moved. Removing a file only marks its row deleted, and adding the same path again
+ * revives that row. The store is not thread-safe; it is meant to be used from the JavaFX thread.
+ */
+public class FileResultStore {
+
+    private static final FileType[] FILE_TYPES = FileType.values();
+    private static final byte DELETED = -1;
+
+    private final List<String> parents = new ArrayList<>();
+    private final Map<String, Integer> parentIds = new HashMap<>();
+
+    private byte[] names = new byte[1 << 16];
+    private int namesLength;
+
+    private int[] nameStarts = new int[1024];
+    private int[] parentIndexes = new int[1024];
+    private int[] hashes = new int[1024];
+    private long[] sizes = new long[1024];
+    private long[] lastModifiedTimes = new long[1024];
+    private byte[] types = new byte[1024];
+    private int rowCount;
+
+    private final int[] liveCounts = new int[FILE_TYPES.length];
+
+    /**
+     * Row number plus one per slot, zero for an empty slot.
+     */
+    private int[] table = new int[2048];
+
+    /**
+     * Adds a file or, if its path is already stored, updates its size, modification time and type.
+     *
+     * @return the row of the file
+     */
+    public int add(FileEnhanced file) {
+        String parentPath = file.getParentPath();
+        byte[] name = file.getFileName().getBytes(StandardCharsets.UTF_8);
+        int parent = parentId(parentPath);
+        int hash = file.hashCode();
+        byte type = (byte) file.getFileType().ordinal();
+
+        int row = find(hash, parent, name);
+        if (row >= 0) {
+            if (types[row] != type) {
+                if (types[row] != DELETED) {
+                    liveCounts[types[row]]--;
+                }
+                liveCounts[type]++;
+                types[row] = type;
+            }
+            sizes[row] = file.getSize();
+            lastModifiedTimes[row] = file.getLastModified();
+            return row;
+        }
+
+        ensureRowCapacity(rowCount + 1);
+        ensureNameCapacity(namesLength + name.length);
+
+        row = rowCount++;
+        System.arraycopy(name, 0, names, namesLength, name.length);
+        nameStarts[row] = namesLength;
+        namesLength += name.length;
+        parentIndexes[row] = parent;
+        hashes[row] = hash;
+        sizes[row] = file.getSize();
+        lastModifiedTimes[row] = file.getLastModified();
+        types[row] = type;
+        liveCounts[type]++;
+
+        if (rowCount * 2 > table.length) {
+            rehash(table.length * 2);
+        } else {
+            insert(row);
+        }
+        return row;
+    }
+
+    /**
+     * Finds the row of a stored file, deleted or not.
+     *
+     * @return the row, or -1 if the file was never stored
+     */
+    public int rowOf(FileEnhanced file) {
+        Integer parent = parentIds.get(file.getParentPath());
+        if (parent == null) {
+            return -1;
+        }
+        return find(file.hashCode(), parent, file.getFileName().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Marks the given file deleted.
+     *
+     * @return true if the file was stored and not yet deleted
+     */
+    public boolean remove(File file) {
+        String parentPath = file.getParent();
+        Integer parent = parentIds.get(parentPath);
+        if (parent == null) {
+            return false;
+        }
+        String fileName = file.getName();
+        int row = find(FileEnhanced.pathHash(parentPath, fileName), parent, fileName.getBytes(StandardCharsets.UTF_8));
+        if (row < 0 || types[row] == DELETED) {
+            return false;
+        }
+        liveCounts[types[row]]--;
+        types[row] = DELETED;
+        return true;
+    }
+
+    /**
+     * Marks every file inside the given directories, at any depth, deleted.
+     *
+     * @return the number of files removed
+     */
+    public int removeBelow(Collection<String> directories) {
+        Set<String> removedDirectories = new HashSet<>(directories);
+        boolean[] removedParents = new boolean[parents.size()];
+        boolean any = false;
+        for (int p = 0; p < removedParents.length; p++) {
+            for (File directory = new File(parents.get(p)); directory != null; directory = directory.getParentFile()) {
+                if (removedDirectories.contains(directory.getPath())) {
+                    removedParents[p] = true;
+                    any = true;
+                    break;
+                }
+            }
+        }
+        if (!any) {
+            return 0;
+        }
+
+        int removed = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (types[row] != DELETED && removedParents[parentIndexes[row]]) {
+                liveCounts[types[row]]--;
+                types[row] = DELETED;
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes every row and parent directory.
+     */
+    public void clear() {
+        parents.clear();
+        parentIds.clear();
+        namesLength = 0;
+        rowCount = 0;
+        Arrays.fill(liveCounts, 0);
+        Arrays.fill(table, 0);
+    }
+
+    /**
+     * Gets the number of rows, including deleted ones. Valid rows are 0 to rowCount() - 1.
+     */
+    public int rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Gets the number of stored, not deleted files of the given type.
+     */
+    public int count(FileType fileType) {
+        return liveCounts[fileType.ordinal()];
+    }
+
+    /**
+     * Returns the rows of all stored, not deleted files of the given type, in insertion order.
+     */
+    public int[] rows(FileType fileType) {
+        byte type = (byte) fileType.ordinal();
+        int[] rows = new int[liveCounts[type]];
+        int count = 0;
+        for (int row = 0; row < rowCount && count < rows.length; row++) {
+            if (types[row] == type) {
+                rows[count++] = row;
+            }
+        }
+        return rows;
+    }
+
+    public boolean isDeleted(int row) {
+        return types[row] == DELETED;
+    }
+
+    /**
+     * Gets the type of a row, or null if the row is deleted.
+     */
+    public FileType getFileType(int row) {
+        return types[row] == DELETED ? null : FILE_TYPES[types[row]];
+    }
+
+    /**
+     * Gets the type code of a row: the {@link FileType} ordinal, or -1 if the row is deleted.
+     */
+    public byte getTypeCode(int row) {
+        return types[row];
+    }
+
+    public String getFileName(int row) {
+        int start = nameStarts[row];
+        return new String(names, start, nameEnd(row) - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the length of a row's name in UTF-8 bytes.
+     */
+    public int getNameLength(int row) {
+        return nameEnd(row) - nameStarts[row];
+    }
+
+    /**
+     * Gets one UTF-8 byte of a row's name.
+     */
+    public byte getNameByte(int row, int index) {
+        return names[nameStarts[row] + index];
+    }
+
+    public String getParentPath(int row) {
+        return parents.get(parentIndexes[row]);
+    }
+
+    public long getSize(int row) {
+        return sizes[row];
+    }
+
+    public long getLastModified(int row) {
+        return lastModifiedTimes[row];
+    }
+
+    /**
+     * Materializes a row as a {@link FileEnhanced} for display.
+     */
+    public FileEnhanced get(int row) {
+        FileType fileType = getFileType(row);
+        return new FileEnhanced(getParentPath(row), getFileName(row), fileType, sizes[row], lastModifiedTimes[row]);
+    }
+
+    /**
+     * Compares the names of two rows by their UTF-8 bytes, which orders them by code point.
+     */
+    public int compareNames(int rowA, int rowB) {
+        int startA = nameStarts[rowA];
+        int startB = nameStarts[rowB];
+        return Arrays.compareUnsigned(names, startA, nameEnd(rowA), names, startB, nameEnd(rowB));
+    }
+
+    /**
+     * Compares the extensions of two rows, the bytes after the last dot of their names. Names
+     * without a dot have an empty extension.
+     */
+    public int compareExtensions(int rowA, int rowB) {
+        int endA = nameEnd(rowA);
+        int endB = nameEnd(rowB);
+        return Arrays.compareUnsigned(names, extensionStart(rowA, endA), endA, names, extensionStart(rowB, endB), endB);
+    }
+
+    private int extensionStart(int row, int end) {
+        int start = nameStarts[row];
+        for (int i = end - 1; i >= start; i--) {
+            if (names[i] == '.') {
+                return i + 1;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Sorts rows in place with a stable merge sort, without boxing them.
+     */
+    public static void sortRows(int[] rows, int from, int to, RowComparator comparator) {
+        if (to - from < 2) {
+            return;
+        }
+        int[] buffer = Arrays.copyOfRange(rows, from, to);
+        mergeSort(buffer, 0, rows, from, to - from, comparator);
+    }
+
+    /**
+     * Sorts src[srcFrom, srcFrom + length) into dst[dstFrom, dstFrom + length). Both ranges must hold
+     * the same rows on entry; src is used as scratch space.
+     */
+    private static void mergeSort(int[] src, int srcFrom, int[] dst, int dstFrom, int length, RowComparator comparator) {
+        if (length < 16) {
+            for (int i = dstFrom + 1; i < dstFrom + length; i++) {
+                int row = dst[i];
+                int j = i;
+                while (j > dstFrom && comparator.compare(dst[j - 1], row) > 0) {
+                    dst[j] = dst[j - 1];
+                    j--;
+                }
+                dst[j] = row;
+            }
+            return;
+        }
+
+        int half = length >>> 1;
+        mergeSort(dst, dstFrom, src, srcFrom, half, comparator);
+        mergeSort(dst, dstFrom + half, src, srcFrom + half, length - half, comparator);
+
+        int p = srcFrom;
+        int pEnd = srcFrom + half;
+        int q = pEnd;
+        int qEnd = srcFrom + length;
+        for (int i = dstFrom; i < dstFrom + length; i++) {
+            if (q >= qEnd || (p < pEnd && comparator.compare(src[p], src[q]) <= 0)) {
+                dst[i] = src[p++];
+            } else {
+                dst[i] = src[q++];
+            }
+        }
+    }
+
+    private int nameEnd(int row) {
+        return row + 1 < rowCount ? nameStarts[row + 1] : namesLength;
+    }
+
+    private int parentId(String parentPath) {
+        Integer id = parentIds.get(parentPath);
+        if (id == null) {
+            id = parents.size();
+            parents.add(parentPath);
+            parentIds.put(parentPath, id);
+        }
+        return id;
+    }
+
+    private int find(int hash, int parent, byte[] name) {
+        int mask = table.length - 1;
+        for (int slot = mix(hash) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int row = table[slot] - 1;
+            if (hashes[row] == hash && parentIndexes[row] == parent
+                    && Arrays.equals(names, nameStarts[row], nameEnd(row), name, 0, name.length)) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(int row) {
+        int mask = table.length - 1;
+        int slot = mix(hashes[row]) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = row + 1;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        for (int row = 0; row < rowCount; row++) {
+            insert(row);
+        }
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private void ensureRowCapacity(int capacity) {
+        if (capacity <= types.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, types.length * 2);
+        nameStarts = Arrays.copyOf(nameStarts, newCapacity);
+        parentIndexes = Arrays.copyOf(parentIndexes, newCapacity);
+        hashes = Arrays.copyOf(hashes, newCapacity);
+        sizes = Arrays.copyOf(sizes, newCapacity);
+        lastModifiedTimes = Arrays.copyOf(lastModifiedTimes, newCapacity);
+        types = Arrays.copyOf(types, newCapacity);
+    }
+
+    private void ensureNameCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalStateException("Name buffer exceeds 2 GB");
+        }
+        if (capacity > names.length) {
+            long newCapacity = Math.max(capacity, (long) names.length * 2);
+            names = Arrays.copyOf(names, (int) Math.min(newCapacity, Integer.MAX_VALUE - 8));
+        }
+    }
+
+    /**
+     * Compares two rows of the store.
+     */
+    @FunctionalInterface
+    public interface RowComparator {
+        int compare(int rowA, int rowB);
+    }
+}
@@ -0,0 +1,200 @@
+package org.example.fileexplorerjavafx;
+
+import javafx.concurrent.Task;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.AclFileAttributeView;
+import java.nio.file.attribute.DosFileAttributeView;
+import java.nio.file.attribute.DosFileAttributes;
+import java.nio.file.attribute.FileOwnerAttributeView;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.List;
+
+/**
+ * Saves a file in the background without ever leaving it half written. The content is streamed
+ * into a temporary file in the same directory, forced to disk and then renamed over the target in
+ * one atomic step, so the target holds either the old or the new content even if the save fails
+ * or the application dies halfway. A symbolic link is saved through: the file it points to is
+ * replaced and the link stays a link. The new file gets the owner, permissions, ACL and DOS
+ * attributes of the one it replaces, as far as the file system has them and the user may set them.
+ * <p>
+ * A writer that reads from a mapping of the target itself must let go of it before the rename,
+ * because Windows refuses to replace a file that is still mapped. It does so in the release step,
+ * which runs once the new content is on disk.
+ */
+public class FileSaveTask extends Task<Void> {
+
+    private static final int REPLACE_ATTEMPTS = 5;
+
+    private final Path target;
+    private final ContentWriter writer;
+    private final Runnable release;
+
+    /**
+     * @param target the file to save
+     * @param writer writes the new content; it runs on the background thread
+     */
+    public FileSaveTask(Path target, ContentWriter writer) {
+        this(target, writer, null);
+    }
+
+    /**
+     * @param target  the file to save
+     * @param writer  writes the new content; it runs on the background thread
+     * @param release closes whatever the writer read from the target, after the new content was
+     *                written and before it replaces the target; it runs on the background thread
+     */
+    public FileSaveTask(Path target, ContentWriter writer, Runnable release) {
+        this.target = target;
+        this.writer = writer;
+        this.release = release;
+    }
+
+    @Override
+    protected Void call() throws IOException {
+        Path destination = resolve(target);
+        Path temp = Files.createTempFile(destination.getParent(), "." + destination.getFileName(), ".tmp");
+        boolean saved = false;
+        try {
+            if (Files.exists(destination)) {
+                copyAttributes(destination, temp);
+            }
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writer.write(out);
+                out.force(true);
+            }
+            if (release != null) {
+                release.run();
+            }
+            replace(temp, destination);
+            saved = true;
+        } finally {
+            if (!saved) {
+                Files.deleteIfExists(temp);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Follows symbolic links to the file that is actually saved, even if it does not exist yet.
+     */
+    private static Path resolve(Path path) throws IOException {
+        if (Files.exists(path)) {
+            return path.toRealPath();
+        }
+        Path absolute = path.toAbsolutePath();
+        for (int links = 0; Files.isSymbolicLink(absolute) && links < 40; links++) {
+            absolute = absolute.getParent().resolve(Files.readSymbolicLink(absolute)).normalize();
+        }
+        return absolute;
+    }
+
+    /**
+     * Gives the new file the owner and attributes of the file it replaces. Setting the owner
+     * needs privileges most users lack, so a refused owner change is only logged.
+     */
+    private static void copyAttributes(Path from, Path to) throws IOException {
+        PosixFileAttributeView posix = Files.getFileAttributeView(to, PosixFileAttributeView.class);
+        if (posix != null) {
+            PosixFileAttributes attrs = Files.readAttributes(from, PosixFileAttributes.class);
+            posix.setPermissions(attrs.permissions());
+            try {
+                PosixFileAttributes current = posix.readAttributes();
+                if (!current.group().equals(attrs.group())) {
+                    posix.setGroup(attrs.group());
+                }
+                if (!current.owner().equals(attrs.owner())) {
+                    posix.setOwner(attrs.owner());
+                }
+            } catch (IOException e) {
+                Log.warn("Could not keep the owner of " + from + ": " + e.getMessage());
+            }
+            return;
+        }
+
+        AclFileAttributeView acl = Files.getFileAttributeView(to, AclFileAttributeView.class);
+        if (acl != null) {
+            acl.setAcl(Files.getFileAttributeView(from, AclFileAttributeView.class).getAcl());
+        }
+        FileOwnerAttributeView owner = Files.getFileAttributeView(to, FileOwnerAttributeView.class);
+        if (owner != null) {
+            try {
+                owner.setOwner(Files.getOwner(from));
+            } catch (IOException e) {
+                Log.warn("Could not keep the owner of " + from + ": " + e.getMessage());
+            }
+        }
+        DosFileAttributeView dos = Files.getFileAttributeView(to, DosFileAttributeView.class);
+        if (dos != null) {
+            DosFileAttributes attrs = Files.readAttributes(from, DosFileAttributes.class);
+            dos.setArchive(attrs.isArchive());
+            dos.setHidden(attrs.isHidden());
+            dos.setSystem(attrs.isSystem());
+        }
+    }
+
+    /**
+     * Renames the temporary file over the target. After a release, the dropped mapping is only
+     * unmapped once it is garbage collected, so a replace refused meanwhile is retried after a
+     * collection.
+     */
+    private void replace(Path temp, Path destination) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                try {
+                    Files.move(temp, destination, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, destination, StandardCopyOption.REPLACE_EXISTING);
+                }
+                return;
+            } catch (FileSystemException e) {
+                if (release == null || attempt == REPLACE_ATTEMPTS) {
+                    throw e;
+                }
+                System.gc();
+                try {
+                    Thread.sleep(100L * attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Streams text paragraphs as UTF-8 through a buffer, separated by line feeds, without joining
+     * them into one string first.
+     */
+    public static void writeParagraphs(FileChannel out, List<? extends CharSequence> paragraphs) throws IOException {
+        Writer writer = new BufferedWriter(Channels.newWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        for (int i = 0; i < paragraphs.size(); i++) {
+            if (i > 0) {
+                writer.write('\n');
+            }
+            writer.append(paragraphs.get(i));
+        }
+        writer.flush();
+    }
+
+    /**
+     * Writes the content of a file to a channel.
+     */
+    @FunctionalInterface
+    public interface ContentWriter {
+        void write(FileChannel out) throws IOException;
+    }
+}
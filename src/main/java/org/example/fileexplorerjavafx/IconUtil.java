@@ -1,16 +1,125 @@
 package org.example.fileexplorerjavafx;
 
+import javafx.application.Platform;
 import javafx.embed.swing.SwingFXUtils;
 import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
 
 import javax.swing.*;
 import javax.swing.filechooser.FileSystemView;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
+/**
+ * Resolves system icons for files. Icons are cached by file kind, so all files sharing an
+ * extension share one image: directories share one key and files without an extension share
+ * another. The cache keeps the most recently used {@value #MAX_CACHED_ICONS} kinds.
+ * <p>
+ * Executables and shortcuts carry their own icon, so they are cached per file, keyed by path and
+ * modification time so a rewritten file gets its new icon. A folder of them easily holds more than
+ * one screen of distinct icons, so they have a separate cache of {@value #MAX_CACHED_FILE_ICONS}
+ * entries and cannot evict the shared kinds or each other while scrolling.
+ * <p>
+ * Loading an icon goes through Swing and is slow, so {@link #loadFileIcon} does it on a background
+ * thread and hands out a blank placeholder until the icon is ready.
+ */
 public class IconUtil {
 
+    private static final int MAX_CACHED_ICONS = 256;
+    private static final int MAX_CACHED_FILE_ICONS = 4096;
+    private static final String DIRECTORY_KEY = "<dir>";
+    private static final String NO_EXTENSION_KEY = "<file>";
+    private static final Set<String> PER_FILE_EXTENSIONS = Set.of("exe", "lnk", "ico", "url", "appref-ms");
+
+    private static final Image PLACEHOLDER = new WritableImage(16, 16);
+
+    private static final Map<String, CompletableFuture<Image>> ICONS = lruCache(MAX_CACHED_ICONS);
+    private static final Map<String, CompletableFuture<Image>> FILE_ICONS = lruCache(MAX_CACHED_FILE_ICONS);
+
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "icon-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Gets the icon of a file, loading it on the calling thread if it is not cached yet.
+     */
     public static Image getFileIcon(File file) {
+        return iconFor(file, file.isDirectory()).join();
+    }
+
+    /**
+     * Hands the icon of a file to the consumer. A cached icon is passed immediately; otherwise the
+     * placeholder is passed immediately and the icon follows on the JavaFX thread once it is loaded.
+     * A null icon means the platform has none for the file.
+     */
+    public static void loadFileIcon(File file, boolean directory, Consumer<Image> consumer) {
+        CompletableFuture<Image> icon = iconFor(file, directory);
+        if (icon.isDone()) {
+            consumer.accept(icon.join());
+            return;
+        }
+        consumer.accept(PLACEHOLDER);
+        icon.thenAccept(image -> Platform.runLater(() -> consumer.accept(image)));
+    }
+
+    /**
+     * Gets the blank image shown while an icon is loading.
+     */
+    public static Image getPlaceholderIcon() {
+        return PLACEHOLDER;
+    }
+
+    private static Map<String, CompletableFuture<Image>> lruCache(int maxSize) {
+        return new LinkedHashMap<>(maxSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<Image>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    private static CompletableFuture<Image> iconFor(File file, boolean directory) {
+        String extension = directory ? null : extension(file.getName());
+        if (extension != null && PER_FILE_EXTENSIONS.contains(extension)) {
+            return iconFor(FILE_ICONS, file.getPath() + '@' + file.lastModified(), file);
+        }
+        String key = directory ? DIRECTORY_KEY : extension == null ? NO_EXTENSION_KEY : "." + extension;
+        return iconFor(ICONS, key, file);
+    }
+
+    private static CompletableFuture<Image> iconFor(Map<String, CompletableFuture<Image>> cache, String key, File file) {
+        synchronized (cache) {
+            CompletableFuture<Image> icon = cache.get(key);
+            if (icon == null) {
+                icon = CompletableFuture.supplyAsync(() -> loadSystemIcon(file), LOADER);
+                cache.put(key, icon);
+            }
+            return icon;
+        }
+    }
+
+    /**
+     * Gets the lower-cased extension of a file name, or null if it has none.
+     */
+    private static String extension(String name) {
+        int index = name.lastIndexOf('.');
+        if (index <= 0 || index == name.length() - 1) {
+            return null;
+        }
+        return name.substring(index + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static Image loadSystemIcon(File file) {
         try {
             FileSystemView fileSystemView = FileSystemView.getFileSystemView();
             Icon icon = fileSystemView.getSystemIcon(file);
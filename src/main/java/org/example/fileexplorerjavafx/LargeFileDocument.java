@@ -0,0 +1,439 @@
+package org.example.fileexplorerjavafx;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import javafx.collections.ObservableListBase;
+import javafx.concurrent.Task;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * View of a text file of any size. The file is memory-mapped in segments of up to 1 GB, so its
+ * content stays in the page cache instead of the heap, and a background task counts the lines and
+ * records the offset at which every 256th line starts. Other lines are found by scanning forward
+ * from the nearest recorded offset, which is cheap since a list asks for neighbouring lines in
+ * turn. The line index costs 8 bytes per 256 lines, about 3 MB for a file of 100 million lines,
+ * and lines are decoded only when asked for, so showing the file in a virtualized list keeps the
+ * heap bounded by the index and the visible lines.
+ * <p>
+ * Single lines can be replaced. Edits are kept beside the mapping until the document is written
+ * out with {@link #writeTo}, which copies the unchanged ranges between them straight from the file.
+ * <p>
+ * Windows does not let a file be replaced while a view of it is mapped, so {@link #close()} drops
+ * every reference to the mapping, and a document must be closed before its file is overwritten.
+ */
+public class LargeFileDocument implements AutoCloseable {
+
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+    private static final int MAX_LINE_BYTES = 64 * 1024;
+    private static final long PUBLISH_INTERVAL_NANOS = 100_000_000L;
+    private static final int CHECKPOINT_SHIFT = 8;
+    private static final int CHECKPOINT_MASK = (1 << CHECKPOINT_SHIFT) - 1;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final long size;
+    private final MappedByteBuffer[] segments;
+    private final ReentrantLock indexing = new ReentrantLock();
+    private Task<Void> indexTask;
+
+    private volatile long[] checkpoints = new long[1 << 8];
+    private volatile int lineCount;
+    private volatile boolean indexed;
+    private volatile Cursor cursor = new Cursor(-1, 0, 0);
+
+    private final TreeMap<Integer, String> edits = new TreeMap<>();
+    private final Lines lines = new Lines();
+
+    private LargeFileDocument(Path path, FileChannel channel) throws IOException {
+        this.path = path;
+        this.channel = channel;
+        this.size = channel.size();
+
+        int segmentCount = (int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+        segments = new MappedByteBuffer[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            long position = (long) i << SEGMENT_SHIFT;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, 1L << SEGMENT_SHIFT));
+        }
+    }
+
+    /**
+     * Maps a file. The line index is empty until {@link #createIndexTask()} has run.
+     */
+    public static LargeFileDocument open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new LargeFileDocument(path, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the size of the file in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the number of lines indexed so far.
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Tells whether the line index covers the whole file.
+     */
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    /**
+     * Gets the offset of the first byte of a line.
+     */
+    public long getLineStart(int line) {
+        return locate(line).start;
+    }
+
+    /**
+     * Gets the offset just past the end of a line, including its line break.
+     */
+    public long getLineEnd(int line) {
+        return locate(line).end;
+    }
+
+    /**
+     * Finds where a line starts and ends, scanning forward from the last line found if it comes
+     * before the line in the same block of 256 lines, or else from the block's checkpoint.
+     */
+    private Cursor locate(int line) {
+        Objects.checkIndex(line, lineCount);
+        Cursor last = cursor;
+        if (last.line == line) {
+            return last;
+        }
+
+        int current;
+        long start;
+        if (last.line >= 0 && last.line < line && last.line >>> CHECKPOINT_SHIFT == line >>> CHECKPOINT_SHIFT) {
+            current = last.line + 1;
+            start = last.end;
+        } else {
+            current = line & ~CHECKPOINT_MASK;
+            start = checkpoints[line >>> CHECKPOINT_SHIFT];
+        }
+        while (current < line) {
+            start = nextLineStart(start);
+            current++;
+        }
+
+        Cursor found = new Cursor(line, start, nextLineStart(start));
+        cursor = found;
+        return found;
+    }
+
+    /**
+     * Gets the offset just past the next line break at or after a position, or the end of the file.
+     */
+    private long nextLineStart(long position) {
+        while (position < size) {
+            MappedByteBuffer segment = segments[(int) (position >>> SEGMENT_SHIFT)];
+            long base = position & ~SEGMENT_MASK;
+            int limit = segment.limit();
+            for (int i = (int) (position & SEGMENT_MASK); i < limit; i++) {
+                if (segment.get(i) == '\n') {
+                    return base + i + 1;
+                }
+            }
+            position = base + limit;
+        }
+        return size;
+    }
+
+    /**
+     * Gets a line, without its line break: its replacement if it was edited, otherwise the line
+     * decoded as UTF-8. Lines longer than 64 KB are cut off.
+     */
+    public String getLine(int line) {
+        String edited = edits.get(line);
+        if (edited != null) {
+            return edited;
+        }
+
+        long start = getLineStart(line);
+        long end = getContentEnd(line);
+        int length = (int) Math.min(end - start, MAX_LINE_BYTES);
+        byte[] bytes = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            long position = start + copied;
+            MappedByteBuffer segment = segments[(int) (position >>> SEGMENT_SHIFT)];
+            int offset = (int) (position & SEGMENT_MASK);
+            int count = Math.min(length - copied, segment.limit() - offset);
+            segment.get(offset, bytes, copied, count);
+            copied += count;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Tells whether a line is short enough to be shown in full, and so can be edited.
+     */
+    public boolean isEditable(int line) {
+        return getContentEnd(line) - getLineStart(line) <= MAX_LINE_BYTES;
+    }
+
+    /**
+     * Replaces the text of a line, keeping its line break. Must be called on the JavaFX thread.
+     */
+    public void setLine(int line, String text) {
+        if (!isEditable(line)) {
+            throw new IllegalArgumentException("Line " + line + " is too long to edit");
+        }
+        edits.put(line, text);
+        lines.lineChanged(line);
+    }
+
+    /**
+     * Puts back edits taken with {@link #getEdits()} from a document of the same, unchanged file.
+     * Must be called on the JavaFX thread.
+     */
+    public void restoreEdits(Map<Integer, String> lineEdits) {
+        edits.putAll(lineEdits);
+        for (int line : lineEdits.keySet()) {
+            lines.lineChanged(line);
+        }
+    }
+
+    /**
+     * Tells whether any line was edited.
+     */
+    public boolean isModified() {
+        return !edits.isEmpty();
+    }
+
+    /**
+     * Returns a copy of the edits, by line, for {@link #writeTo}.
+     */
+    public NavigableMap<Integer, String> getEdits() {
+        return new TreeMap<>(edits);
+    }
+
+    /**
+     * Writes the file with the given edits applied. The ranges between edited lines are copied
+     * from the file with {@link FileChannel#transferTo}, so only the edited lines pass through
+     * the heap.
+     */
+    public void writeTo(FileChannel out, NavigableMap<Integer, String> lineEdits) throws IOException {
+        long position = 0;
+        for (Map.Entry<Integer, String> edit : lineEdits.entrySet()) {
+            int line = edit.getKey();
+            transfer(position, getLineStart(line), out);
+            ByteBuffer text = ByteBuffer.wrap(edit.getValue().getBytes(StandardCharsets.UTF_8));
+            while (text.hasRemaining()) {
+                out.write(text);
+            }
+            position = getContentEnd(line);
+        }
+        transfer(position, size, out);
+    }
+
+    private void transfer(long from, long to, FileChannel out) throws IOException {
+        while (from < to) {
+            long transferred = channel.transferTo(from, to - from, out);
+            if (transferred <= 0) {
+                throw new IOException("Unable to copy " + path + " at offset " + from);
+            }
+            from += transferred;
+        }
+    }
+
+    /**
+     * Gets the offset just past the text of a line, before its line break.
+     */
+    private long getContentEnd(int line) {
+        Cursor location = locate(line);
+        long start = location.start;
+        long end = location.end;
+        if (end > start && byteAt(end - 1) == '\n') {
+            end--;
+        }
+        if (end > start && byteAt(end - 1) == '\r') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Gets the lines as an observable list for a {@code ListView}. The list grows as the index is
+     * built and must only be used on the JavaFX thread.
+     */
+    public ObservableList<String> getLines() {
+        return lines;
+    }
+
+    /**
+     * Creates the task that builds the line index. The task updates its progress as it scans the
+     * file and publishes the lines found so far to {@link #getLines()} about ten times a second.
+     */
+    public Task<Void> createIndexTask() {
+        indexTask = new Task<>() {
+            @Override
+            protected Void call() {
+                indexing.lock();
+                try {
+                    index();
+                } finally {
+                    indexing.unlock();
+                }
+                return null;
+            }
+
+            private void index() {
+                long[] starts = checkpoints;
+                int count = 1;
+                long lastStart = 0;
+                starts[0] = 0;
+                long lastPublish = System.nanoTime();
+
+                for (int s = 0; s < segments.length; s++) {
+                    MappedByteBuffer segment = segments[s];
+                    long base = (long) s << SEGMENT_SHIFT;
+                    int limit = segment.limit();
+                    for (int i = 0; i < limit; i++) {
+                        if (segment.get(i) == '\n') {
+                            lastStart = base + i + 1;
+                            if ((count & CHECKPOINT_MASK) == 0) {
+                                int checkpoint = count >>> CHECKPOINT_SHIFT;
+                                if (checkpoint == starts.length) {
+                                    starts = Arrays.copyOf(starts, checkpoint * 2);
+                                    checkpoints = starts;
+                                }
+                                starts[checkpoint] = lastStart;
+                            }
+                            count++;
+                        }
+                        if ((i & 0xFFFFF) == 0) {
+                            if (isCancelled()) {
+                                return;
+                            }
+                            long now = System.nanoTime();
+                            if (now - lastPublish >= PUBLISH_INTERVAL_NANOS) {
+                                lineCount = count - 1;
+                                Platform.runLater(lines::refresh);
+                                updateProgress(base + i, size);
+                                lastPublish = now;
+                            }
+                        }
+                    }
+                }
+
+                checkpoints = starts;
+                lineCount = count > 1 && lastStart == size ? count - 1 : count;
+                indexed = true;
+                Platform.runLater(lines::refresh);
+                updateProgress(size, size);
+            }
+        };
+        return indexTask;
+    }
+
+    private byte byteAt(long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].get((int) (position & SEGMENT_MASK));
+    }
+
+    /**
+     * Stops indexing, waits for it to let go of the mapping, drops every reference to the mapped
+     * segments and closes the channel. The mapping itself is released once it is garbage collected.
+     * The document cannot be read afterwards.
+     */
+    @Override
+    public void close() {
+        if (indexTask != null) {
+            indexTask.cancel();
+        }
+        indexing.lock();
+        try {
+            Arrays.fill(segments, null);
+        } finally {
+            indexing.unlock();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * A line found by {@link #locate}, kept to find the next lines from.
+     */
+    private static final class Cursor {
+        private final int line;
+        private final long start;
+        private final long end;
+
+        Cursor(int line, long start, long end) {
+            this.line = line;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Observable list of the indexed lines, decoding each line when it is asked for.
+     */
+    private class Lines extends ObservableListBase<String> {
+        private int size;
+
+        void refresh() {
+            int oldSize = size;
+            size = lineCount;
+            if (size > oldSize) {
+                beginChange();
+                nextAdd(oldSize, size);
+                endChange();
+            }
+        }
+
+        void lineChanged(int line) {
+            if (line < size) {
+                beginChange();
+                nextSet(line, null);
+                endChange();
+            }
+        }
+
+        @Override
+        public String get(int index) {
+            Objects.checkIndex(index, size);
+            return getLine(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package org.example.fileexplorerjavafx;
+
+import java.io.PrintStream;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Leveled logging to the console that never makes the caller wait for output. Records are handed
+ * to a daemon thread that writes them; if it falls behind and its queue fills up, further records
+ * are dropped and counted instead of slowing the caller down.
+ * <p>
+ * Only records at or above the level of the {@value #LEVEL_PROPERTY} system property are kept,
+ * {@link Level#INFO} by default. Per-file and per-batch messages are logged at {@link Level#DEBUG}
+ * or {@link Level#TRACE} through the {@link Supplier} overloads, so the message is not even built
+ * unless that level is enabled.
+ */
+public final class Log {
+
+    public static final String LEVEL_PROPERTY = "battuta.log.level";
+
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+
+    /**
+     * Severity of a record, most severe first.
+     */
+    public enum Level {
+        ERROR, WARN, INFO, DEBUG, TRACE
+    }
+
+    private static final Level LEVEL = parseLevel(System.getProperty(LEVEL_PROPERTY));
+    private static final BlockingQueue<Record> QUEUE = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static final AtomicLong DROPPED = new AtomicLong();
+
+    static {
+        Thread writer = new Thread(Log::write, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private Log() {
+    }
+
+    public static boolean isEnabled(Level level) {
+        return level.compareTo(LEVEL) <= 0;
+    }
+
+    public static void error(String message) {
+        log(Level.ERROR, message, null);
+    }
+
+    public static void error(String message, Throwable error) {
+        log(Level.ERROR, message, error);
+    }
+
+    public static void warn(String message) {
+        log(Level.WARN, message, null);
+    }
+
+    public static void info(String message) {
+        log(Level.INFO, message, null);
+    }
+
+    public static void debug(String message) {
+        log(Level.DEBUG, message, null);
+    }
+
+    public static void debug(Supplier<String> message) {
+        if (isEnabled(Level.DEBUG)) {
+            log(Level.DEBUG, message.get(), null);
+        }
+    }
+
+    public static void trace(Supplier<String> message) {
+        if (isEnabled(Level.TRACE)) {
+            log(Level.TRACE, message.get(), null);
+        }
+    }
+
+    /**
+     * Gets the number of records dropped because the writer fell behind.
+     */
+    public static long getDroppedCount() {
+        return DROPPED.get();
+    }
+
+    private static void log(Level level, String message, Throwable error) {
+        if (isEnabled(level) && !QUEUE.offer(new Record(level, message, error, Thread.currentThread().getName()))) {
+            DROPPED.incrementAndGet();
+        }
+    }
+
+    private static void write() {
+        long reportedDrops = 0;
+        while (true) {
+            Record record;
+            try {
+                record = QUEUE.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            PrintStream out = record.level.compareTo(Level.WARN) <= 0 ? System.err : System.out;
+            String time = TIME_FORMAT.format(record.time);
+            long dropped = DROPPED.get();
+            if (dropped != reportedDrops) {
+                out.println(time + " WARN  [log-writer] " + (dropped - reportedDrops) + " log records dropped");
+                reportedDrops = dropped;
+            }
+            out.println(time + " " + String.format("%-5s", record.level) + " [" + record.thread + "] " + record.message);
+            if (record.error != null) {
+                record.error.printStackTrace(out);
+            }
+        }
+    }
+
+    private static Level parseLevel(String value) {
+        if (value != null) {
+            try {
+                return Level.valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.err.println("Unknown log level \"" + value + "\", using INFO");
+            }
+        }
+        return Level.INFO;
+    }
+
+    private static final class Record {
+        private final Level level;
+        private final String message;
+        private final Throwable error;
+        private final String thread;
+        private final LocalTime time = LocalTime.now();
+
+        Record(Level level, String message, Throwable error, String thread) {
+            this.level = level;
+            this.message = message;
+            this.error = error;
+            this.thread = thread;
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package org.example.fileexplorerjavafx;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Trigram index over the lower-cased names in a {@link FileResultStore}, answering case-insensitive
+ * substring queries. Each row's name is split into overlapping 3-byte UTF-8 windows and the row is
+ * appended to the posting list of every window. A query of three or more bytes intersects the
+ * posting lists of its own windows, smallest first, and only verifies the few surviving rows, so
+ * it does not touch every name. Shorter queries scan the name bytes of the category in place.
+ * <p>
+ * Rows are indexed in the order they were added to the store, which keeps every posting list
+ * sorted. The trigrams of scanned names are computed by the scan workers with {@link #trigrams(String)},
+ * so the JavaFX thread only appends rows to posting lists; a query looks up and verifies rows and
+ * never indexes. A query that extends the previous one narrows the previous result instead of
+ * starting over. Not thread-safe apart from {@link #trigrams(String)}; meant to be used from the
+ * JavaFX thread.
+ */
+public class NameSearchIndex {
+
+    private final FileResultStore store;
+
+    private int[] keys = new int[1 << 12];
+    private int[] postingIds = new int[1 << 12];
+    private int trigramCount;
+
+    private int[][] postings = new int[1 << 10][];
+    private int[] postingSizes = new int[1 << 10];
+
+    private int indexedRows;
+    private int[] windows = new int[256];
+
+    private String lastQuery;
+    private FileType lastFileType;
+    private int lastIndexedRows;
+    private int[] lastResult;
+
+    public NameSearchIndex(FileResultStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Drops every indexed row, after the store was cleared.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        trigramCount = 0;
+        postings = new int[1 << 10][];
+        postingSizes = new int[1 << 10];
+        indexedRows = 0;
+        lastQuery = null;
+        lastResult = null;
+    }
+
+    /**
+     * Forgets the previous result, after rows were removed, revived or changed type, so the next
+     * query is not answered by narrowing it.
+     */
+    public void invalidate() {
+        lastResult = null;
+    }
+
+    /**
+     * Computes the distinct trigrams of a lower-cased file name, for {@link #add(int, int[])}. Safe
+     * to call from any thread.
+     */
+    public static int[] trigrams(String fileName) {
+        boolean ascii = true;
+        for (int i = 0; i < fileName.length() && ascii; i++) {
+            ascii = fileName.charAt(i) < 128;
+        }
+        byte[] name = ascii ? fileName.getBytes(StandardCharsets.ISO_8859_1)
+                : fileName.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+
+        int[] result = new int[Math.max(name.length - 2, 0)];
+        int count = 0;
+        for (int i = 0; i + 2 < name.length; i++) {
+            int trigram = trigram(fold(name[i]), fold(name[i + 1]), fold(name[i + 2]));
+            int j = 0;
+            while (j < count && result[j] != trigram) {
+                j++;
+            }
+            if (j == count) {
+                result[count++] = trigram;
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Indexes a row added to the store with the trigrams of its name, computed ahead of time by
+     * {@link #trigrams(String)}. Rows added since the last indexed row are indexed first. A row that
+     * is already indexed is skipped: names never change once a row exists, so revived or updated
+     * rows need no re-indexing.
+     */
+    public void add(int row, int[] rowTrigrams) {
+        if (row < indexedRows) {
+            return;
+        }
+        indexUpTo(row);
+        for (int trigram : rowTrigrams) {
+            append(postingId(trigram), row);
+        }
+        indexedRows = row + 1;
+    }
+
+    /**
+     * Indexes the rows added to the store since the last indexed row, reading their names from
+     * the store. Meant for the few rows a file system change adds.
+     */
+    public void update() {
+        indexUpTo(store.rowCount());
+    }
+
+    private void indexUpTo(int end) {
+        for (int row = indexedRows; row < end; row++) {
+            int windowCount = trigrams(row);
+            for (int i = 0; i < windowCount; i++) {
+                append(postingId(windows[i]), row);
+            }
+        }
+        indexedRows = Math.max(indexedRows, end);
+    }
+
+    /**
+     * Returns the indexed rows of the given type whose name contains the query, ignoring case, in
+     * row order. Rows not yet passed to {@link #add} or {@link #update()} are not found.
+     */
+    public int[] search(String query, FileType fileType) {
+        String lowerQuery = query.toLowerCase(Locale.ROOT);
+        byte[] needle = lowerQuery.getBytes(StandardCharsets.UTF_8);
+        byte typeCode = (byte) fileType.ordinal();
+
+        int[] result;
+        if (lastResult != null && fileType == lastFileType && indexedRows == lastIndexedRows
+                && lowerQuery.contains(lastQuery)) {
+            result = verify(lastResult, lastResult.length, lowerQuery, needle, typeCode);
+        } else if (needle.length >= 3) {
+            result = searchTrigrams(lowerQuery, needle, typeCode);
+        } else {
+            result = scan(lowerQuery, needle, typeCode);
+        }
+
+        lastQuery = lowerQuery;
+        lastFileType = fileType;
+        lastIndexedRows = indexedRows;
+        lastResult = result;
+        return result;
+    }
+
+    private int[] searchTrigrams(String lowerQuery, byte[] needle, byte typeCode) {
+        int windowCount = needle.length - 2;
+        int[] lists = new int[windowCount];
+        for (int i = 0; i < windowCount; i++) {
+            int id = findPosting(trigram(needle[i], needle[i + 1], needle[i + 2]));
+            if (id < 0) {
+                return new int[0];
+            }
+            lists[i] = id;
+        }
+
+        int smallest = 0;
+        for (int i = 1; i < windowCount; i++) {
+            if (postingSizes[lists[i]] < postingSizes[lists[smallest]]) {
+                smallest = i;
+            }
+        }
+
+        int[] candidates = Arrays.copyOf(postings[lists[smallest]], postingSizes[lists[smallest]]);
+        int count = candidates.length;
+        for (int i = 0; i < windowCount && count > 0; i++) {
+            if (i != smallest) {
+                count = intersect(candidates, count, postings[lists[i]], postingSizes[lists[i]]);
+            }
+        }
+        return verify(candidates, count, lowerQuery, needle, typeCode);
+    }
+
+    private int[] scan(String lowerQuery, byte[] needle, byte typeCode) {
+        int rowCount = store.rowCount();
+        int[] result = new int[Math.min(rowCount, 1024)];
+        int count = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (store.getTypeCode(row) == typeCode && nameContains(row, lowerQuery, needle)) {
+                if (count == result.length) {
+                    result = Arrays.copyOf(result, count * 2);
+                }
+                result[count++] = row;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private int[] verify(int[] candidates, int candidateCount, String lowerQuery, byte[] needle, byte typeCode) {
+        int[] result = new int[candidateCount];
+        int count = 0;
+        for (int i = 0; i < candidateCount; i++) {
+            int row = candidates[i];
+            if (store.getTypeCode(row) == typeCode && nameContains(row, lowerQuery, needle)) {
+                result[count++] = row;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Keeps the rows of the sorted candidates that also occur in the sorted posting list.
+     */
+    private static int intersect(int[] candidates, int count, int[] posting, int postingSize) {
+        int kept = 0;
+        int p = 0;
+        for (int i = 0; i < count; i++) {
+            int row = candidates[i];
+            while (p < postingSize && posting[p] < row) {
+                p++;
+            }
+            if (p == postingSize) {
+                break;
+            }
+            if (posting[p] == row) {
+                candidates[kept++] = row;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Checks a row's name for the lower-cased query. ASCII queries on ASCII names are matched on the
+     * stored bytes with ASCII case folding and no allocation; anything else decodes and lower-cases
+     * the name the way it was indexed, since a non-ASCII character such as the Kelvin sign can
+     * lower-case to an ASCII letter.
+     */
+    private boolean nameContains(int row, String lowerQuery, byte[] needle) {
+        if (needle.length != lowerQuery.length() || !isAsciiName(row)) {
+            return store.getFileName(row).toLowerCase(Locale.ROOT).contains(lowerQuery);
+        }
+
+        int last = store.getNameLength(row) - needle.length;
+        for (int start = 0; start <= last; start++) {
+            int i = 0;
+            while (i < needle.length && fold(store.getNameByte(row, start + i)) == needle[i]) {
+                i++;
+            }
+            if (i == needle.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Fills {@link #windows} with the trigrams of a row's lower-cased name and returns their number.
+     */
+    private int trigrams(int row) {
+        int length = store.getNameLength(row);
+        int count = 0;
+        if (isAsciiName(row)) {
+            for (int i = 0; i + 2 < length; i++) {
+                count = addWindow(count, trigram(fold(store.getNameByte(row, i)), fold(store.getNameByte(row, i + 1)),
+                        fold(store.getNameByte(row, i + 2))));
+            }
+        } else {
+            byte[] lower = store.getFileName(row).toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+            for (int i = 0; i + 2 < lower.length; i++) {
+                count = addWindow(count, trigram(lower[i], lower[i + 1], lower[i + 2]));
+            }
+        }
+        return count;
+    }
+
+    private boolean isAsciiName(int row) {
+        int length = store.getNameLength(row);
+        for (int i = 0; i < length; i++) {
+            if (store.getNameByte(row, i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds a trigram to the windows of the current name unless it is already there.
+     */
+    private int addWindow(int count, int trigram) {
+        for (int i = 0; i < count; i++) {
+            if (windows[i] == trigram) {
+                return count;
+            }
+        }
+        if (count == windows.length) {
+            windows = Arrays.copyOf(windows, count * 2);
+        }
+        windows[count] = trigram;
+        return count + 1;
+    }
+
+    private static byte fold(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    /**
+     * Packs three bytes into a non-zero key; zero marks an empty hash slot.
+     */
+    private static int trigram(byte a, byte b, byte c) {
+        return ((a & 0xFF) << 16 | (b & 0xFF) << 8 | (c & 0xFF)) + 1;
+    }
+
+    private int findPosting(int key) {
+        int mask = keys.length - 1;
+        for (int slot = mix(key) & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return postingIds[slot];
+            }
+        }
+        return -1;
+    }
+
+    private int postingId(int key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return postingIds[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int id = trigramCount++;
+        keys[slot] = key;
+        postingIds[slot] = id;
+        if (id == postings.length) {
+            postings = Arrays.copyOf(postings, id * 2);
+            postingSizes = Arrays.copyOf(postingSizes, id * 2);
+        }
+        postings[id] = new int[4];
+        if (trigramCount * 2 > keys.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    private void rehash() {
+        int[] oldKeys = keys;
+        int[] oldIds = postingIds;
+        keys = new int[oldKeys.length * 2];
+        postingIds = new int[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = mix(oldKeys[i]) & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                postingIds[slot] = oldIds[i];
+            }
+        }
+    }
+
+    private void append(int id, int row) {
+        int size = postingSizes[id];
+        if (size == postings[id].length) {
+            postings[id] = Arrays.copyOf(postings[id], size * 2);
+        }
+        postings[id][size] = row;
+        postingSizes[id] = size + 1;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,103 @@
+package org.example.fileexplorerjavafx;
+
+import javafx.collections.ObservableListBase;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Objects;
+
+/**
+ * Read-only observable list view over a sequence of {@link FileResultStore} rows, such as a
+ * {@link SortedRowIndex}. Rows are materialized as
+ * {@link FileEnhanced} objects only when the table asks for them, which a virtualized
+ * {@code TableView} does for visible cells only, so memory and scroll cost depend on the
+ * viewport rather than on the size of the result set.
+ */
+public class ResultListAdapter extends ObservableListBase<FileEnhanced> {
+
+    private static final int CACHE_SIZE = 256;
+
+    private final FileResultStore store;
+    private Rows index;
+    private boolean descending;
+    private int size;
+
+    private final int[] cachedRows = new int[CACHE_SIZE];
+    private final FileEnhanced[] cachedFiles = new FileEnhanced[CACHE_SIZE];
+
+    public ResultListAdapter(FileResultStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Switches the list to another row sequence or direction and notifies listeners.
+     */
+    public void setIndex(Rows index, boolean descending) {
+        this.index = index;
+        this.descending = descending;
+        refresh();
+    }
+
+    /**
+     * Re-reads the size of the index and tells listeners that the content changed, after rows were
+     * added to, updated in or removed from the store.
+     */
+    public void refresh() {
+        int oldSize = size;
+        size = index != null ? index.size() : 0;
+        Arrays.fill(cachedFiles, null);
+
+        if (oldSize == 0 && size == 0) {
+            return;
+        }
+        beginChange();
+        nextReplace(0, size, Collections.nCopies(oldSize, null));
+        endChange();
+    }
+
+    @Override
+    public FileEnhanced get(int position) {
+        Objects.checkIndex(position, size);
+        int row = index.get(descending ? size - 1 - position : position);
+
+        int slot = row & (CACHE_SIZE - 1);
+        FileEnhanced file = cachedFiles[slot];
+        if (file == null || cachedRows[slot] != row) {
+            file = store.get(row);
+            cachedFiles[slot] = file;
+            cachedRows[slot] = row;
+        }
+        return file;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * An ordered sequence of store rows.
+     */
+    public interface Rows {
+        int size();
+
+        int get(int position);
+
+        /**
+         * Wraps an array of rows that is already in display order.
+         */
+        static Rows of(int[] rows) {
+            return new Rows() {
+                @Override
+                public int size() {
+                    return rows.length;
+                }
+
+                @Override
+                public int get(int position) {
+                    return rows[position];
+                }
+            };
+        }
+    }
+}
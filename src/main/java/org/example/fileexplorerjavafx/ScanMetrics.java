@@ -0,0 +1,114 @@
+package org.example.fileexplorerjavafx;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Live counters of one drive scan. The scan workers add to them without locking and they can be
+ * read at any time, from any thread, while the scan runs and after it ended.
+ */
+public class ScanMetrics {
+
+    private final LongAdder directories = new LongAdder();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder matchedFiles = new LongAdder();
+    private final LongAdder accessDeniedDirectories = new LongAdder();
+    private final IntSupplier queueDepth;
+    private final long startTime = System.nanoTime();
+    private volatile long endTime;
+
+    public ScanMetrics() {
+        this(() -> 0);
+    }
+
+    /**
+     * @param queueDepth reports how many found files are waiting to be shown
+     */
+    public ScanMetrics(IntSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    /**
+     * Records one listed directory with the number of files it holds and how many of them matched.
+     */
+    public void directoryScanned(int fileCount, int matchedCount) {
+        directories.increment();
+        files.add(fileCount);
+        matchedFiles.add(matchedCount);
+    }
+
+    /**
+     * Records a directory the scan was not allowed to open.
+     */
+    public void accessDenied() {
+        accessDeniedDirectories.increment();
+    }
+
+    /**
+     * Stops the clock. Rates are from then on computed over the whole scan.
+     */
+    public void finish() {
+        if (endTime == 0) {
+            endTime = System.nanoTime();
+        }
+    }
+
+    public boolean isFinished() {
+        return endTime != 0;
+    }
+
+    public long getDirectories() {
+        return directories.sum();
+    }
+
+    /**
+     * Gets the number of files seen, matched or not. Directories served from the file index count
+     * their matched files only.
+     */
+    public long getFiles() {
+        return files.sum();
+    }
+
+    public long getMatchedFiles() {
+        return matchedFiles.sum();
+    }
+
+    public long getAccessDeniedDirectories() {
+        return accessDeniedDirectories.sum();
+    }
+
+    /**
+     * Gets the number of found files waiting to be shown.
+     */
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+
+    public long getElapsedNanos() {
+        long end = endTime;
+        return (end != 0 ? end : System.nanoTime()) - startTime;
+    }
+
+    public double getDirectoriesPerSecond() {
+        return perSecond(getDirectories());
+    }
+
+    public double getFilesPerSecond() {
+        return perSecond(getFiles());
+    }
+
+    private double perSecond(long count) {
+        return count / Math.max(getElapsedNanos() / 1e9, 1e-3);
+    }
+
+    /**
+     * Summarizes the counters in one line for the status bar.
+     */
+    @Override
+    public String toString() {
+        long seconds = getElapsedNanos() / 1_000_000_000L;
+        return String.format("%,d dirs (%,.0f/s), %,d files (%,.0f/s), %,d matched, %,d denied, %,d queued, %d:%02d",
+                getDirectories(), getDirectoriesPerSecond(), getFiles(), getFilesPerSecond(), getMatchedFiles(),
+                getAccessDeniedDirectories(), getQueueDepth(), seconds / 60, seconds % 60);
+    }
+}
@@ -0,0 +1,280 @@
+package org.example.fileexplorerjavafx;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Keeps scan results current by watching the scanned directories with a {@link WatchService}.
+ * Raw events are coalesced per path and handed to the listener as one {@link Changes} batch per
+ * flush interval, so an event storm such as unpacking a large archive turns into a handful of updates.
+ */
+public class ScanWatcher implements AutoCloseable {
+
+    /**
+     * System property that caps the number of watched directories.
+     */
+    public static final String MAX_DIRECTORIES_PROPERTY = "battuta.watch.maxDirectories";
+
+    private static final long FLUSH_INTERVAL_MILLIS = 250;
+
+    private final WatchService watchService;
+    private final Function<String, FileType> classifier;
+    private final Consumer<Changes> listener;
+    private final int maxDirectories;
+    private final AtomicInteger watchedDirectories = new AtomicInteger();
+    private final Map<Path, WatchEvent.Kind<?>> pending = new LinkedHashMap<>();
+    private final ScheduledExecutorService flusher;
+    private boolean overflowed;
+
+    public ScanWatcher(Function<String, FileType> classifier, Consumer<Changes> listener) throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.classifier = classifier;
+        this.listener = listener;
+        this.maxDirectories = Integer.getInteger(MAX_DIRECTORIES_PROPERTY, 8192);
+
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "scan-watcher-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+        Thread eventThread = new Thread(this::processEvents, "scan-watcher");
+        eventThread.setDaemon(true);
+        eventThread.start();
+    }
+
+    /**
+     * Starts watching a directory. Directories past the configured cap are silently skipped.
+     * Safe to call from several scan workers.
+     */
+    public void register(Path directory) {
+        if (watchedDirectories.incrementAndGet() > maxDirectories) {
+            watchedDirectories.decrementAndGet();
+            return;
+        }
+        try {
+            directory.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException | ClosedWatchServiceException e) {
+            watchedDirectories.decrementAndGet();
+        }
+    }
+
+    /**
+     * Gets the number of directories currently watched.
+     */
+    public int getWatchedDirectoryCount() {
+        return watchedDirectories.get();
+    }
+
+    private void processEvents() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path directory = (Path) key.watchable();
+
+                synchronized (pending) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            overflowed = true;
+                            continue;
+                        }
+                        Path path = directory.resolve((Path) event.context());
+                        pending.put(path, merge(pending.get(path), event.kind()));
+                    }
+                }
+
+                if (!key.reset()) {
+                    watchedDirectories.decrementAndGet();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Watcher closed.
+        }
+    }
+
+    /**
+     * Folds a new event into the one already pending for the same path. A create followed by a
+     * delete cancels out to a delete, a delete followed by a create counts as a create.
+     */
+    private static WatchEvent.Kind<?> merge(WatchEvent.Kind<?> previous, WatchEvent.Kind<?> next) {
+        if (previous == null) {
+            return next;
+        }
+        if (next == StandardWatchEventKinds.ENTRY_DELETE) {
+            return StandardWatchEventKinds.ENTRY_DELETE;
+        }
+        if (previous == StandardWatchEventKinds.ENTRY_DELETE || previous == StandardWatchEventKinds.ENTRY_CREATE) {
+            return StandardWatchEventKinds.ENTRY_CREATE;
+        }
+        return next;
+    }
+
+    private void flush() {
+        List<Map.Entry<Path, WatchEvent.Kind<?>>> events;
+        boolean rescanNeeded;
+        synchronized (pending) {
+            if (pending.isEmpty() && !overflowed) {
+                return;
+            }
+            events = new ArrayList<>(pending.entrySet());
+            pending.clear();
+            rescanNeeded = overflowed;
+            overflowed = false;
+        }
+
+        Changes changes = new Changes(rescanNeeded);
+        for (Map.Entry<Path, WatchEvent.Kind<?>> event : events) {
+            Path path = event.getKey();
+            if (event.getValue() == StandardWatchEventKinds.ENTRY_DELETE) {
+                changes.removed.add(path.toFile());
+                continue;
+            }
+
+            BasicFileAttributes attrs = readAttributes(path);
+            if (attrs == null) {
+                changes.removed.add(path.toFile());
+            } else if (attrs.isDirectory()) {
+                if (event.getValue() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    addDirectory(path, changes);
+                }
+            } else if (attrs.isRegularFile()) {
+                addFile(path, attrs, changes);
+            }
+        }
+
+        if (changes.isEmpty()) {
+            return;
+        }
+        try {
+            listener.accept(changes);
+        } catch (RuntimeException e) {
+            Log.error("Could not apply file system changes", e);
+        }
+    }
+
+    /**
+     * Watches a directory created after the scan and reports the files it already contains, since
+     * they may have been written before the watch was registered.
+     */
+    private void addDirectory(Path directory, Changes changes) {
+        register(directory);
+        try {
+            Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (!dir.equals(directory)) {
+                        register(dir);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile()) {
+                        addFile(file, attrs, changes);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            Log.error("Could not list new directory " + directory, e);
+        }
+    }
+
+    private void addFile(Path file, BasicFileAttributes attrs, Changes changes) {
+        String fileName = file.getFileName().toString();
+        FileType fileType = classifier.apply(fileName);
+        if (fileType != null) {
+            changes.updated.add(new FileEnhanced(file.getParent().toString(), fileName, fileType, attrs.size(),
+                    attrs.lastModifiedTime().toMillis()));
+        }
+    }
+
+    private static BasicFileAttributes readAttributes(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+        flusher.shutdownNow();
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            Log.error("Could not close the watch service", e);
+        }
+    }
+
+    /**
+     * One coalesced batch of file system changes.
+     */
+    public static class Changes {
+        private final List<FileEnhanced> updated = new ArrayList<>();
+        private final List<File> removed = new ArrayList<>();
+        private final boolean rescanNeeded;
+
+        Changes(boolean rescanNeeded) {
+            this.rescanNeeded = rescanNeeded;
+        }
+
+        /**
+         * Gets the categorized files that were created or modified.
+         */
+        public List<FileEnhanced> getUpdated() {
+            return updated;
+        }
+
+        /**
+         * Gets the deleted paths. A deleted path may have been a directory, in which case
+         * everything below it is gone as well.
+         */
+        public List<File> getRemoved() {
+            return removed;
+        }
+
+        /**
+         * Returns true if events were lost because the watch queue overflowed.
+         */
+        public boolean isRescanNeeded() {
+            return rescanNeeded;
+        }
+
+        boolean isEmpty() {
+            return updated.isEmpty() && removed.isEmpty() && !rescanNeeded;
+        }
+    }
+}
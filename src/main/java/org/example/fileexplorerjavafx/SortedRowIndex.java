@@ -0,0 +1,150 @@
+package org.example.fileexplorerjavafx;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Sorted order of the rows of one category in a {@link FileResultStore}. The order is sorted once
+ * when the index is created and then maintained incrementally: added or updated rows are buffered
+ * and merged into the order the next time it is read, so reading a page of rows is a plain slice.
+ */
+public class SortedRowIndex implements ResultListAdapter.Rows {
+
+    /**
+     * The column rows are ordered by.
+     */
+    public enum SortKey {
+        NAME,
+        SIZE,
+        TYPE
+    }
+
+    private final FileResultStore store;
+    private final byte typeCode;
+    private final FileResultStore.RowComparator comparator;
+
+    private int[] order;
+    private int size;
+    private int[] pending = new int[64];
+    private int pendingSize;
+    private final BitSet pendingRows = new BitSet();
+    private boolean dirty;
+
+    public SortedRowIndex(FileResultStore store, FileType fileType, SortKey sortKey) {
+        this.store = store;
+        this.typeCode = (byte) fileType.ordinal();
+        this.comparator = comparator(store, sortKey);
+
+        order = store.rows(fileType);
+        size = order.length;
+        FileResultStore.sortRows(order, 0, size, comparator);
+    }
+
+    /**
+     * Builds the row comparator for a sort key. Ties are broken by name so the order is stable
+     * across rebuilds.
+     */
+    public static FileResultStore.RowComparator comparator(FileResultStore store, SortKey sortKey) {
+        switch (sortKey) {
+            case SIZE:
+                return (a, b) -> {
+                    int result = Long.compare(store.getSize(a), store.getSize(b));
+                    return result != 0 ? result : store.compareNames(a, b);
+                };
+            case TYPE:
+                return (a, b) -> {
+                    int result = store.compareExtensions(a, b);
+                    return result != 0 ? result : store.compareNames(a, b);
+                };
+            case NAME:
+            default:
+                return store::compareNames;
+        }
+    }
+
+    /**
+     * Queues a row that was added to the store or whose sorted column changed.
+     */
+    public void add(int row) {
+        if (!pendingRows.get(row)) {
+            pendingRows.set(row);
+            if (pendingSize == pending.length) {
+                pending = Arrays.copyOf(pending, pendingSize * 2);
+            }
+            pending[pendingSize++] = row;
+        }
+        dirty = true;
+    }
+
+    /**
+     * Marks the index as containing rows that may have been deleted from the store.
+     */
+    public void invalidate() {
+        dirty = true;
+    }
+
+    /**
+     * Gets the number of rows in the index.
+     */
+    @Override
+    public int size() {
+        merge();
+        return size;
+    }
+
+    /**
+     * Gets the row at the given sorted position.
+     */
+    @Override
+    public int get(int position) {
+        merge();
+        return order[position];
+    }
+
+    /**
+     * Drops deleted and re-queued rows from the order, sorts the queued rows and merges them in.
+     * Costs O(n + k log k) for k queued rows instead of a full O(n log n) sort.
+     */
+    private void merge() {
+        if (!dirty) {
+            return;
+        }
+
+        int[] added = new int[pendingSize];
+        int addedCount = 0;
+        for (int i = 0; i < pendingSize; i++) {
+            if (store.getTypeCode(pending[i]) == typeCode) {
+                added[addedCount++] = pending[i];
+            }
+        }
+        FileResultStore.sortRows(added, 0, addedCount, comparator);
+
+        int[] merged = new int[size + addedCount];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size || j < addedCount) {
+            if (i < size) {
+                int row = order[i];
+                if (pendingRows.get(row) || store.getTypeCode(row) != typeCode) {
+                    i++;
+                    continue;
+                }
+                if (j >= addedCount || comparator.compare(row, added[j]) <= 0) {
+                    merged[count++] = row;
+                    i++;
+                    continue;
+                }
+            }
+            merged[count++] = added[j++];
+        }
+
+        for (int k = 0; k < pendingSize; k++) {
+            pendingRows.clear(pending[k]);
+        }
+        pendingSize = 0;
+        order = merged;
+        size = count;
+        dirty = false;
+    }
+}
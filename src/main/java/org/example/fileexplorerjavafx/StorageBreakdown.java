@@ -0,0 +1,379 @@
+package org.example.fileexplorerjavafx;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Works out where the space of a drive went. The tree is walked in parallel like
+ * {@link DriveScanner}, with one {@link ForkJoinPool} task per directory, and sizes are summed
+ * bottom-up: every directory adds up its own files per {@link FileType} in a primitive array and
+ * then the totals of its subdirectories once they finish. Nothing is kept per file, so memory
+ * stays flat however many files the drive holds.
+ * <p>
+ * The result has the bytes per category and the recursive size of every folder directly under
+ * the root. While the walk runs, the totals so far are published a few times a second. Symbolic
+ * links are not followed, and folders directly under the root that are on another file store
+ * (such as {@code /proc} or another mounted drive) are skipped, so the totals match the used space
+ * of the drive.
+ */
+public class StorageBreakdown {
+
+    /**
+     * Category index of the files that belong to no {@link FileType}.
+     */
+    public static final int OTHER = FileType.values().length;
+
+    private static final Set<FileVisitOption> NO_OPTIONS = EnumSet.noneOf(FileVisitOption.class);
+    private static final long PUBLISH_INTERVAL_NANOS = 250_000_000L;
+
+    private final int workers;
+    private volatile AtomicBoolean currentRun = new AtomicBoolean();
+
+    public StorageBreakdown(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1: " + workers);
+        }
+        this.workers = workers;
+    }
+
+    /**
+     * Measures the tree under the given root. The progress consumer receives the totals so far
+     * from the worker threads, at most every 250 ms, and is not called for the final result.
+     *
+     * @return the totals, which are partial if the run was cancelled
+     */
+    public Result analyze(Path root, Function<String, FileType> classifier, Consumer<Result> progress) {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        currentRun = cancelled;
+        Run run = new Run(root, classifier, progress, cancelled);
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        try {
+            DirectoryTask rootTask = new DirectoryTask(run, root, -1);
+            pool.invoke(rootTask);
+            run.complete(rootTask);
+        } finally {
+            pool.shutdown();
+        }
+        return run.snapshot(!cancelled.get());
+    }
+
+    /**
+     * Stops the most recently started run. Directories that are already being listed finish, no
+     * new ones are started.
+     */
+    public void cancel() {
+        currentRun.set(true);
+    }
+
+    /**
+     * State shared by the tasks of one run. Totals are kept in adders and atomic arrays, so
+     * workers add to them without locking and a snapshot can be read at any time.
+     */
+    private static class Run {
+        private final Path root;
+        private final Function<String, FileType> classifier;
+        private final Consumer<Result> progress;
+        private final AtomicBoolean cancelled;
+        private final LongAdder[] categoryBytes = new LongAdder[OTHER + 1];
+        private final LongAdder files = new LongAdder();
+        private final LongAdder directories = new LongAdder();
+        private final AtomicLong lastPublish = new AtomicLong(System.nanoTime());
+        private FileStore rootStore;
+        private volatile String[] folderNames = new String[0];
+        private volatile AtomicLongArray folderBytes = new AtomicLongArray(0);
+
+        Run(Path root, Function<String, FileType> classifier, Consumer<Result> progress, AtomicBoolean cancelled) {
+            this.root = root;
+            this.classifier = classifier;
+            this.progress = progress;
+            this.cancelled = cancelled;
+            for (int i = 0; i < categoryBytes.length; i++) {
+                categoryBytes[i] = new LongAdder();
+            }
+            try {
+                rootStore = Files.getFileStore(root);
+            } catch (IOException e) {
+                rootStore = null;
+            }
+        }
+
+        /**
+         * Tells whether a folder directly under the root is on the same file store as the root.
+         */
+        boolean isOnRootStore(Path folder) {
+            try {
+                return rootStore == null || Objects.equals(rootStore, Files.getFileStore(folder));
+            } catch (IOException e) {
+                return true;
+            }
+        }
+
+        void startFolders(String[] names) {
+            folderBytes = new AtomicLongArray(names.length);
+            folderNames = names;
+        }
+
+        /**
+         * Replaces the running folder totals with the sizes summed bottom-up.
+         */
+        void complete(DirectoryTask rootTask) {
+            AtomicLongArray bytes = folderBytes;
+            List<DirectoryTask> folders = rootTask.subTasks;
+            for (int i = 0; i < folders.size(); i++) {
+                bytes.set(i, folders.get(i).subtreeBytes);
+            }
+            if (bytes.length() > folders.size()) {
+                bytes.set(folders.size(), rootTask.ownBytes);
+            }
+        }
+
+        void publish() {
+            if (progress == null) {
+                return;
+            }
+            long now = System.nanoTime();
+            long last = lastPublish.get();
+            if (now - last >= PUBLISH_INTERVAL_NANOS && lastPublish.compareAndSet(last, now)) {
+                progress.accept(snapshot(false));
+            }
+        }
+
+        Result snapshot(boolean complete) {
+            long[] categories = new long[categoryBytes.length];
+            for (int i = 0; i < categories.length; i++) {
+                categories[i] = categoryBytes[i].sum();
+            }
+            String[] names = folderNames;
+            AtomicLongArray bytes = folderBytes;
+            long[] folders = new long[Math.min(names.length, bytes.length())];
+            for (int i = 0; i < folders.length; i++) {
+                folders[i] = bytes.get(i);
+            }
+            return new Result(root, categories, names, folders, files.sum(), directories.sum(), complete);
+        }
+    }
+
+    private static class DirectoryTask extends RecursiveAction {
+        private final Run run;
+        private final Path directory;
+        private final int folder;
+        private List<DirectoryTask> subTasks = List.of();
+        private long ownBytes;
+        private long subtreeBytes;
+
+        /**
+         * @param folder index of the folder under the root this directory belongs to, or -1 for
+         *               the root itself
+         */
+        DirectoryTask(Run run, Path directory, int folder) {
+            this.run = run;
+            this.directory = directory;
+            this.folder = folder;
+        }
+
+        @Override
+        protected void compute() {
+            if (run.cancelled.get()) {
+                return;
+            }
+
+            long[] bytes = new long[OTHER + 1];
+            long[] fileCount = new long[1];
+            List<Path> subdirectories = new ArrayList<>();
+            try {
+                Files.walkFileTree(directory, NO_OPTIONS, 1, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (attrs.isDirectory()) {
+                            subdirectories.add(file);
+                        } else if (attrs.isRegularFile()) {
+                            FileType fileType = run.classifier.apply(file.getFileName().toString());
+                            bytes[fileType == null ? OTHER : fileType.ordinal()] += attrs.size();
+                            fileCount[0]++;
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                return;
+            }
+
+            for (int i = 0; i < bytes.length; i++) {
+                if (bytes[i] != 0) {
+                    run.categoryBytes[i].add(bytes[i]);
+                    ownBytes += bytes[i];
+                }
+            }
+            run.files.add(fileCount[0]);
+            run.directories.increment();
+
+            List<DirectoryTask> tasks = new ArrayList<>(subdirectories.size());
+            if (folder < 0) {
+                List<String> names = new ArrayList<>();
+                for (Path subdirectory : subdirectories) {
+                    if (run.isOnRootStore(subdirectory)) {
+                        tasks.add(new DirectoryTask(run, subdirectory, names.size()));
+                        names.add(subdirectory.getFileName().toString());
+                    }
+                }
+                if (ownBytes > 0) {
+                    names.add("(files in " + directory + ")");
+                }
+                run.startFolders(names.toArray(new String[0]));
+                if (ownBytes > 0) {
+                    run.folderBytes.addAndGet(names.size() - 1, ownBytes);
+                }
+            } else {
+                for (Path subdirectory : subdirectories) {
+                    tasks.add(new DirectoryTask(run, subdirectory, folder));
+                }
+                run.folderBytes.addAndGet(folder, ownBytes);
+            }
+            run.publish();
+
+            invokeAll(tasks);
+            long total = ownBytes;
+            for (DirectoryTask task : tasks) {
+                total += task.subtreeBytes;
+            }
+            subtreeBytes = total;
+            if (folder < 0) {
+                subTasks = tasks;
+            }
+        }
+    }
+
+    /**
+     * Totals of one run, or of the part of it done so far.
+     */
+    public static class Result {
+        private final Path root;
+        private final long[] categoryBytes;
+        private final String[] folderNames;
+        private final long[] folderBytes;
+        private final long files;
+        private final long directories;
+        private final boolean complete;
+
+        Result(Path root, long[] categoryBytes, String[] folderNames, long[] folderBytes,
+               long files, long directories, boolean complete) {
+            this.root = root;
+            this.categoryBytes = categoryBytes;
+            this.folderNames = folderNames;
+            this.folderBytes = folderBytes;
+            this.files = files;
+            this.directories = directories;
+            this.complete = complete;
+        }
+
+        public Path getRoot() {
+            return root;
+        }
+
+        /**
+         * Gets the bytes of the files in a category.
+         */
+        public long getCategoryBytes(FileType fileType) {
+            return categoryBytes[fileType.ordinal()];
+        }
+
+        /**
+         * Gets the bytes of the files that belong to no category.
+         */
+        public long getOtherBytes() {
+            return categoryBytes[OTHER];
+        }
+
+        /**
+         * Gets the bytes of all files counted.
+         */
+        public long getTotalBytes() {
+            long total = 0;
+            for (long bytes : categoryBytes) {
+                total += bytes;
+            }
+            return total;
+        }
+
+        /**
+         * Gets the number of folders directly under the root, plus one for the root's own files
+         * if it has any.
+         */
+        public int getFolderCount() {
+            return folderBytes.length;
+        }
+
+        public String getFolderName(int folder) {
+            return folderNames[folder];
+        }
+
+        /**
+         * Gets the recursive size of a folder directly under the root.
+         */
+        public long getFolderBytes(int folder) {
+            return folderBytes[folder];
+        }
+
+        /**
+         * Gets the indexes of the largest folders, largest first.
+         */
+        public int[] getLargestFolders(int limit) {
+            int count = Math.min(limit, folderBytes.length);
+            int[] largest = new int[count];
+            int found = 0;
+            for (int folder = 0; folder < folderBytes.length; folder++) {
+                if (found < count) {
+                    found++;
+                } else if (folderBytes[folder] <= folderBytes[largest[count - 1]]) {
+                    continue;
+                }
+                int i = found - 1;
+                while (i > 0 && folderBytes[largest[i - 1]] < folderBytes[folder]) {
+                    largest[i] = largest[i - 1];
+                    i--;
+                }
+                largest[i] = folder;
+            }
+            return largest;
+        }
+
+        public long getFileCount() {
+            return files;
+        }
+
+        public long getDirectoryCount() {
+            return directories;
+        }
+
+        /**
+         * Tells whether the whole tree was measured.
+         */
+        public boolean isComplete() {
+            return complete;
+        }
+    }
+}
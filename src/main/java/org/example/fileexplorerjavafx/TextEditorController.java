@@ -1,29 +1,56 @@
 package org.example.fileexplorerjavafx;
 
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
 import javafx.scene.control.TextArea;
+import javafx.scene.control.cell.TextFieldListCell;
 import javafx.stage.Stage;
+import javafx.stage.WindowEvent;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
 
 public class TextEditorController {
 
     @FXML
     private TextArea textArea;
 
+    @FXML
+    private ListView<String> lineView;
+
+    @FXML
+    private Label statusLabel;
+
     @FXML
     private Button saveButton;
 
     private Path filePath;
+    private LargeFileDocument document;
+    private Task<Void> indexTask;
+
+    /**
+     * Files at least this large open in the large-file viewer instead of the text area.
+     */
+    private static final long LARGE_FILE_THRESHOLD = 16L * 1024 * 1024;
 
     public void initializeEditor(Path filePath) {
         this.filePath = filePath;
 
         try {
+            if (Files.size(filePath) >= LARGE_FILE_THRESHOLD) {
+                openLargeFile(filePath);
+                return;
+            }
             String content = Files.readString(filePath);
             textArea.setText(content);
         } catch (IOException e) {
@@ -32,15 +59,142 @@ public class TextEditorController {
         }
     }
 
+    /**
+     * Shows a large file through a memory-mapped {@link LargeFileDocument}. Its line index is built
+     * in the background and the list only decodes the lines on screen, so the file opens at once
+     * and heap use does not depend on its size. Lines are edited one at a time in place.
+     */
+    private void openLargeFile(Path filePath) throws IOException {
+        textArea.setVisible(false);
+        textArea.setManaged(false);
+        lineView.setVisible(true);
+        lineView.setManaged(true);
+        lineView.setEditable(true);
+        lineView.setCellFactory(TextFieldListCell.forListView());
+        lineView.setOnEditStart(event -> {
+            if (!document.isEditable(event.getIndex())) {
+                statusLabel.setText("Line " + (event.getIndex() + 1) + " is too long to edit here.");
+                Platform.runLater(() -> lineView.edit(-1));
+            }
+        });
+        lineView.setOnEditCommit(event -> document.setLine(event.getIndex(), event.getNewValue()));
+
+        lineView.sceneProperty().addListener((obs, oldScene, scene) -> {
+            if (scene != null) {
+                scene.windowProperty().addListener((o, oldWindow, window) -> {
+                    if (window != null) {
+                        window.addEventHandler(WindowEvent.WINDOW_HIDDEN, event -> closeDocument());
+                    }
+                });
+            }
+        });
+
+        loadDocument(filePath);
+    }
+
+    /**
+     * Maps the file into a new document, shows it and starts indexing its lines.
+     */
+    private void loadDocument(Path filePath) throws IOException {
+        document = LargeFileDocument.open(filePath);
+        lineView.setItems(document.getLines());
+
+        Task<Void> indexTask = document.createIndexTask();
+        indexTask.progressProperty().addListener((obs, oldVal, newVal) ->
+                statusLabel.setText(String.format("Indexing lines... %.0f%%", newVal.doubleValue() * 100)));
+        indexTask.setOnSucceeded(event ->
+                statusLabel.setText(document.getLineCount() + " lines, large file view"));
+        indexTask.setOnFailed(event -> {
+            indexTask.getException().printStackTrace();
+            statusLabel.setText("Unable to index the file.");
+        });
+        this.indexTask = indexTask;
+
+        Thread thread = new Thread(indexTask);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void closeDocument() {
+        if (indexTask != null) {
+            indexTask.cancel();
+        }
+        if (document != null) {
+            document.close();
+        }
+    }
+
+    /**
+     * Saves in the background through a temporary file that atomically replaces the original. The
+     * text area's paragraphs are copied to strings first; a large file only writes its edited lines
+     * and copies everything between them from the original, then releases its mapping before the
+     * original is replaced and is reloaded afterwards. Editing is paused while saving.
+     */
     @FXML
     private void handleSave() {
-        try {
-            Files.writeString(filePath, textArea.getText());
+        FileSaveTask task;
+        NavigableMap<Integer, String> edits;
+        if (document != null) {
+            edits = document.getEdits();
+            LargeFileDocument source = document;
+            lineView.setItems(FXCollections.observableArrayList());
+            task = new FileSaveTask(filePath, out -> source.writeTo(out, edits), source::close);
+        } else {
+            edits = null;
+            List<String> paragraphs = new ArrayList<>(textArea.getParagraphs().size());
+            for (CharSequence paragraph : textArea.getParagraphs()) {
+                paragraphs.add(paragraph.toString());
+            }
+            task = new FileSaveTask(filePath, out -> FileSaveTask.writeParagraphs(out, paragraphs));
+        }
+
+        setSaving(true);
+        task.setOnSucceeded(event -> {
+            setSaving(false);
+            if (document != null) {
+                reloadDocument(null);
+            }
             showInfo("File Saved", "The file was saved successfully.");
+        });
+        task.setOnFailed(event -> {
+            setSaving(false);
+            task.getException().printStackTrace();
+            if (document != null) {
+                reloadDocument(edits);
+            }
+            showError("Save Error", "An error occurred while saving the file.");
+        });
+
+        Thread thread = new Thread(task);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Maps the file again after a save released the document, putting back the edits that could
+     * not be saved, if any.
+     */
+    private void reloadDocument(NavigableMap<Integer, String> unsavedEdits) {
+        closeDocument();
+        try {
+            loadDocument(filePath);
         } catch (IOException e) {
             e.printStackTrace();
-            showError("Save Error", "An error occurred while saving the file.");
+            saveButton.setDisable(true);
+            lineView.setEditable(false);
+            showError("Error", "Unable to reload the file.");
+            return;
         }
+        if (unsavedEdits != null) {
+            document.restoreEdits(unsavedEdits);
+        }
+    }
+
+    private void setSaving(boolean saving) {
+        saveButton.setDisable(saving);
+        textArea.setEditable(!saving);
+        lineView.setEditable(!saving);
+        statusLabel.setText(saving ? "Saving..." : "");
     }
 
     private void showInfo(String title, String message) {
@@ -0,0 +1,356 @@
+package org.example.fileexplorerjavafx;
+
+import javafx.concurrent.Task;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributeView;
+import java.nio.file.attribute.DosFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copies or moves a file or directory tree into a target directory in the background.
+ * <p>
+ * A move is first tried as a single atomic rename, which is instant on the same file system. Anything
+ * else is copied: the tree is measured first so progress, throughput and the remaining time can be
+ * reported, then copied on a {@link ForkJoinPool} with one task per directory, like
+ * {@link DriveScanner}. Large files are copied with {@link FileChannel#transferTo}, which lets the
+ * kernel move the data without passing it through the heap, and then get the same attributes
+ * {@link StandardCopyOption#COPY_ATTRIBUTES} gives the small ones. Small files are grouped into batches
+ * that workers copy in parallel, so a tree of many small files keeps several requests in flight. A
+ * copied move deletes the source once everything was copied.
+ * <p>
+ * Existing files are never overwritten. The value is the list of source paths that could not be
+ * copied or moved.
+ */
+public class TransferTask extends Task<List<Path>> {
+
+    private static final Set<FileVisitOption> NO_OPTIONS = EnumSet.noneOf(FileVisitOption.class);
+    private static final long LARGE_FILE_SIZE = 8L * 1024 * 1024;
+    private static final int BATCH_FILES = 64;
+    private static final long BATCH_BYTES = 8L * 1024 * 1024;
+    private static final long REPORT_INTERVAL_NANOS = 200_000_000L;
+
+    private final Path source;
+    private final Path target;
+    private final boolean move;
+    private final int workers;
+
+    private final AtomicLong copiedBytes = new AtomicLong();
+    private final AtomicLong copiedFiles = new AtomicLong();
+    private final AtomicLong lastReport = new AtomicLong();
+    private final ConcurrentLinkedQueue<Path> failures = new ConcurrentLinkedQueue<>();
+    private long totalBytes;
+    private long totalFiles;
+    private long startTime;
+
+    /**
+     * @param source          the file or directory to copy or move
+     * @param targetDirectory the directory to copy or move it into
+     * @param move            true to move, false to copy
+     */
+    public TransferTask(Path source, Path targetDirectory, boolean move, int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1: " + workers);
+        }
+        this.source = source;
+        this.target = targetDirectory.resolve(source.getFileName());
+        this.move = move;
+        this.workers = workers;
+    }
+
+    /**
+     * Gets the path the source is copied or moved to.
+     */
+    public Path getTarget() {
+        return target;
+    }
+
+    @Override
+    protected List<Path> call() throws IOException, InterruptedException, ExecutionException {
+        if (target.startsWith(source)) {
+            throw new IOException("Cannot copy " + source + " into itself");
+        }
+        if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+            throw new IOException("Target already exists: " + target);
+        }
+
+        updateProgress(-1, 1);
+        if (move) {
+            try {
+                Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+                updateMessage("Moved " + source + " to " + target.getParent() + ".");
+                return new ArrayList<>(failures);
+            } catch (AtomicMoveNotSupportedException e) {
+                // Different file system, fall back to copy and delete.
+            }
+        }
+
+        updateMessage("Measuring " + source + "...");
+        measure();
+        if (isCancelled()) {
+            return new ArrayList<>(failures);
+        }
+
+        startTime = System.nanoTime();
+        BasicFileAttributes attrs = Files.readAttributes(source, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        if (attrs.isDirectory()) {
+            ForkJoinPool pool = new ForkJoinPool(workers);
+            try {
+                pool.invoke(new DirectoryTask(source, target));
+            } finally {
+                pool.shutdown();
+            }
+        } else {
+            copyFile(source, target, attrs);
+        }
+
+        if (move && failures.isEmpty() && !isCancelled()) {
+            updateMessage("Removing " + source + "...");
+            DeleteTask delete = new DeleteTask(source, workers, this::isCancelled);
+            delete.run();
+            failures.addAll(delete.get());
+        }
+
+        report(true);
+        return new ArrayList<>(failures);
+    }
+
+    /**
+     * Sums the sizes and count of the files to copy, for progress and remaining time.
+     */
+    private void measure() throws IOException {
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (isCancelled()) {
+                    return FileVisitResult.TERMINATE;
+                }
+                totalBytes += attrs.size();
+                totalFiles++;
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void copyFile(Path from, Path to, BasicFileAttributes attrs) {
+        try {
+            if (attrs.size() >= LARGE_FILE_SIZE && attrs.isRegularFile()) {
+                if (!transfer(from, to, attrs.size())) {
+                    return;
+                }
+                copyAttributes(from, to, attrs);
+            } else {
+                Files.copy(from, to, StandardCopyOption.COPY_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+                copiedBytes.addAndGet(attrs.size());
+            }
+            copiedFiles.incrementAndGet();
+        } catch (IOException e) {
+            failures.add(from);
+        }
+        report(false);
+    }
+
+    /**
+     * Copies a large file with {@link FileChannel#transferTo}, reporting progress as it goes. A
+     * cancelled or failed transfer leaves no partial file behind. A transfer that comes up short,
+     * because the source shrank or could not be read further, fails.
+     *
+     * @return false if the transfer was cancelled
+     */
+    private boolean transfer(Path from, Path to, long size) throws IOException {
+        boolean complete = false;
+        try (FileChannel in = FileChannel.open(from, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(to, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long position = 0;
+            while (position < size) {
+                if (isCancelled()) {
+                    return false;
+                }
+                long transferred = in.transferTo(position, Math.min(size - position, LARGE_FILE_SIZE), out);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+                copiedBytes.addAndGet(transferred);
+                report(false);
+            }
+            if (position < size) {
+                throw new IOException("Unable to copy " + from + " at offset " + position + " of " + size);
+            }
+            complete = true;
+        } finally {
+            if (!complete) {
+                Files.deleteIfExists(to);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gives a file copied by {@link #transfer} the attributes {@link StandardCopyOption#COPY_ATTRIBUTES}
+     * copies: its timestamps, and its POSIX permissions or DOS attributes, whichever the file system has.
+     */
+    private static void copyAttributes(Path from, Path to, BasicFileAttributes attrs) throws IOException {
+        Files.getFileAttributeView(to, BasicFileAttributeView.class)
+                .setTimes(attrs.lastModifiedTime(), attrs.lastAccessTime(), attrs.creationTime());
+        PosixFileAttributeView posix = Files.getFileAttributeView(to, PosixFileAttributeView.class);
+        if (posix != null) {
+            posix.setPermissions(Files.getPosixFilePermissions(from));
+            return;
+        }
+        DosFileAttributeView dos = Files.getFileAttributeView(to, DosFileAttributeView.class);
+        if (dos != null) {
+            DosFileAttributes dosAttrs = Files.readAttributes(from, DosFileAttributes.class);
+            dos.setArchive(dosAttrs.isArchive());
+            dos.setHidden(dosAttrs.isHidden());
+            dos.setSystem(dosAttrs.isSystem());
+            dos.setReadOnly(dosAttrs.isReadOnly());
+        }
+    }
+
+    /**
+     * Reports progress, throughput and remaining time, at most every 200 ms unless forced.
+     */
+    private void report(boolean force) {
+        long now = System.nanoTime();
+        long last = lastReport.get();
+        if (!force && (now - last < REPORT_INTERVAL_NANOS || !lastReport.compareAndSet(last, now))) {
+            return;
+        }
+
+        long bytes = copiedBytes.get();
+        double seconds = Math.max((now - startTime) / 1e9, 1e-3);
+        double bytesPerSecond = bytes / seconds;
+        String message = (move ? "Moving " : "Copying ") + copiedFiles.get() + " of " + totalFiles + " files, "
+                + FileEnhanced.formatSize(bytes) + " of " + FileEnhanced.formatSize(totalBytes)
+                + " (" + FileEnhanced.formatSize((long) bytesPerSecond) + "/s";
+        if (bytesPerSecond > 0 && bytes < totalBytes) {
+            long remaining = (long) ((totalBytes - bytes) / bytesPerSecond);
+            message += ", " + String.format("%d:%02d", remaining / 60, remaining % 60) + " left";
+        }
+        updateMessage(message + ")");
+        updateProgress(bytes, Math.max(totalBytes, 1));
+    }
+
+    private class DirectoryTask extends RecursiveAction {
+        private final Path from;
+        private final Path to;
+
+        DirectoryTask(Path from, Path to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (TransferTask.this.isCancelled()) {
+                return;
+            }
+            try {
+                Files.createDirectory(to);
+            } catch (IOException e) {
+                failures.add(from);
+                return;
+            }
+
+            List<RecursiveAction> subTasks = new ArrayList<>();
+            List<Path> batch = new ArrayList<>();
+            List<BasicFileAttributes> batchAttrs = new ArrayList<>();
+            long[] batchBytes = new long[1];
+            try {
+                Files.walkFileTree(from, NO_OPTIONS, 1, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (TransferTask.this.isCancelled()) {
+                            return FileVisitResult.TERMINATE;
+                        }
+                        if (attrs.isDirectory()) {
+                            subTasks.add(new DirectoryTask(file, to.resolve(file.getFileName().toString())));
+                        } else if (attrs.size() >= LARGE_FILE_SIZE) {
+                            subTasks.add(new BatchTask(List.of(file), List.of(attrs), to));
+                        } else {
+                            batch.add(file);
+                            batchAttrs.add(attrs);
+                            batchBytes[0] += attrs.size();
+                            if (batch.size() == BATCH_FILES || batchBytes[0] >= BATCH_BYTES) {
+                                subTasks.add(new BatchTask(new ArrayList<>(batch), new ArrayList<>(batchAttrs), to));
+                                batch.clear();
+                                batchAttrs.clear();
+                                batchBytes[0] = 0;
+                            }
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                        failures.add(file);
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                failures.add(from);
+                return;
+            }
+            if (!batch.isEmpty()) {
+                subTasks.add(new BatchTask(batch, batchAttrs, to));
+            }
+
+            invokeAll(subTasks);
+            try {
+                Files.setLastModifiedTime(to, Files.getLastModifiedTime(from));
+            } catch (IOException e) {
+                Log.warn("Could not copy the modification time of " + from + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Copies a group of files of one directory, either one large file or many small ones.
+     */
+    private class BatchTask extends RecursiveAction {
+        private final List<Path> files;
+        private final List<BasicFileAttributes> attrs;
+        private final Path to;
+
+        BatchTask(List<Path> files, List<BasicFileAttributes> attrs, Path to) {
+            this.files = files;
+            this.attrs = attrs;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            for (int i = 0; i < files.size() && !TransferTask.this.isCancelled(); i++) {
+                Path file = files.get(i);
+                copyFile(file, to.resolve(file.getFileName().toString()), attrs.get(i));
+            }
+        }
+    }
+}